@@ -19,6 +19,15 @@
  */
 //xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
 package batooImage.algorithm;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
 import batooImage.algorithm.code.*;
 
 //xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
@@ -27,16 +36,9 @@ import batooImage.algorithm.code.*;
  *  It runs the recognition along several scanlines and combines the results of
  *  the different runs.
  *  <p>
- *  Central to the combination of the results of the different scanlines is a three dim. array,
- *  referenced as "possible_numbers", containing information about the occurence of a certain 
- *  digit at a specific position in the EAN13 code.
- *  <p>	         
- *  The first dimension has 13 entries and represents the position in the EAN13 code.
- *  The second dimension has 10 entries and works like a stack for the digits recognized
- *  at that position in the EAN13 code. <br>
- *  The third dimension has two elements: <br> 0 = specifies the digit itself (0..9), 
- *                                        <br> 1 = the amount of this digit's occurence  
- *                                                  at that position in the EAN13 code (0..#scanlines)
+ *  Central to the combination of the results of the different scanlines is a DigitHistogram,
+ *  counting the votes for each digit at each position in the EAN13 code. Scanlines
+ *  with a valid code give 100 votes to each of their digits, other scanlines one vote.
  *  <p><p>                                          
  *  Here is an example. Assume, we have 19 scanlines, and along these scanline the following 
  *  information is recognized: (This has been a pretty blurry barcode image... :-)
@@ -62,12 +64,10 @@ import batooImage.algorithm.code.*;
  *   Scanline 18 result: ????????????<br>
  *   Scanline 19 result: ????????????<br>
  *   <p><p>
- *   The possible_numbers-array will contain the following information.
- *   (Index of third dim. = 0 => Here we see information about the recognized digits.)
- *   The array has already been sorted using the sortDigits() method. This means
- *   that the digits that have been detected most at a certain position are on top.
+ *   The ranking of the histogram will contain the following information.
+ *   The digits that have been detected most at a certain position are on top.
  *   <p>
- *   detected digits: possible_numbers[][][0]
+ *   detected digits: (DigitHistogram.getRanking())
  *   <p>
  *   0 :   6  1  2  7  9  7  0  1  7  8  4  0 <br> 
  *   1 :   3  x  6  2  x  4  3  x  8  x  x  x <br>
@@ -80,10 +80,7 @@ import batooImage.algorithm.code.*;
  *   8 :   x  x  x  x  x  x  x  x  x  x  x  x <br> 
  *   9 :   x  x  x  x  x  x  x  x  x  x  x  x <br> 
  *   <p>
- *   Index of third dim. = 1 => Here we see information about the occurence of the
- *   digits.
- *   <p>
- *   # of their occurence: possible_numbers[][][1]
+ *   The votes of these digits: (DigitHistogram.getVotes())
  *   <p>
  *   0 :   2  2  2  1  2  2  2  2  2  2  1  2 <br>  
  *   1 :   1  0  1  1  0  1  1  0  1  0  0  0 <br> 
@@ -98,7 +95,8 @@ import batooImage.algorithm.code.*;
  *   <p> 
  *   Below is a run of the detectValidBarcode() method that tries to detect a valid
  *   barcode. If no code can be recognized directly, we are trying all possible
- *   combinations of the recognized digits starting with the "most likely" combination.
+ *   combinations of the recognized digits starting with the "most likely" combination,
+ *   changing the digits with the smallest vote margins first.
  *   This is intended as a last try. The need to try different combinations of the recognized digits
  *   should occur very seldom, or at least with only very few alternatives for 
  *   specific digits. As a prositive effect, we get the chance to recognize a barcode that
@@ -131,7 +129,118 @@ public class BarcodeDecoder {
 	// VARIABLES
 	//---------------------------------------------------------------------------------------
 
-	private static boolean debug = false;
+	/** A decoder with the default settings. Like every decoder, it can be shared by all threads. */
+	public static final BarcodeDecoder DEFAULT = new BarcodeDecoder();
+
+	private static final boolean debug = false;
+
+	// the number of length units per pixel used for sub-pixel field lengths:
+	private static final int SUBPIXEL_SCALE = 16;
+
+	// the number of different scanlines whose left halves, and the number of different 
+	// scanlines whose right halves must give the same code to add it to the votes:
+	private static final int MIN_STITCHED_LINES = 2;
+
+	// a batch recognition forks tasks for the scanlines of an image until each task has at
+	// most this many scanlines; (the scanlines of an image that is decoded with a session 
+	// aren't split, see ImageTask.decodeImage())
+	private static final int SCANLINES_PER_TASK = 4;
+
+	// the number of module patterns of recent valid scanlines that are compared with each scanline:
+	private static final int REMEMBERED_PATTERNS = 8;
+
+	// an EAN13 code consists of 59 bars and spaces, 95 modules wide:
+	private static final int CODE_FIELDS = 59;
+	private static final int CODE_MODULES = 95;
+
+	// if true, the field lengths are measured with sub-pixel accuracy:
+	private final boolean subpixel_edges;
+
+	// receives timing and counter information, null if no statistics should be collected:
+	private final DecodeListener listener;
+
+	// recognizes the digits along a single scanline:
+	private final Decoder_EAN13 decoder_ean13;
+
+	// rejects images without a barcode before the scanlines are decoded, or null:
+	private final PresenceDetector presence_detector;
+
+	// places scanlines across the bars of the barcode before the scanlines of the plan, or null:
+	private final OrientationEstimator orientation_estimator;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Creates a decoder that measures the field lengths in whole pixels and doesn't 
+	 *  collect any statistics.
+	 */
+	//---------------------------------------------------------------------------------------
+	public BarcodeDecoder() {
+		this(null, false);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** The settings of a decoder can't be changed after its creation. All data that 
+	 *  is needed during a recognition run is allocated per run, so one decoder can be
+	 *  used by several threads at the same time.
+	 *  
+	 *  @param listener receives the time spent in the different stages of every 
+	 *         recognition run, or null if no time measurements should be performed at all.
+	 *  @param subpixel_edges true, if the positions of the edges between black and white 
+	 *         fields should be interpolated from the greyscale gradient. This helps to 
+	 *         recognize barcodes that are only one or two pixels per unit wide.
+	 *  
+	 *  @see DecodeStatistics
+	 */
+	//---------------------------------------------------------------------------------------
+	public BarcodeDecoder(DecodeListener listener, boolean subpixel_edges) {
+		this(listener, subpixel_edges, null);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates a decoder that first checks with the given detector whether an image may
+	 *  contain a barcode at all. Images that are rejected by the detector are returned 
+	 *  as unrecognized without decoding any scanline. Progressive runs and a GreyDevice
+	 *  that contains only some rows aren't checked.
+	 *  
+	 *  @param listener receives the time spent in the different stages, or null.
+	 *  @param subpixel_edges true, if the field lengths should be measured with sub-pixel accuracy.
+	 *  @param presence_detector decides whether an image is decoded, or null if all 
+	 *         images should be decoded.
+	 */
+	//---------------------------------------------------------------------------------------
+	public BarcodeDecoder(DecodeListener listener, boolean subpixel_edges, PresenceDetector presence_detector) {
+		this(listener, subpixel_edges, presence_detector, null);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates a decoder that first estimates the orientation of the barcode with the 
+	 *  given estimator, and decodes a few scanlines perpendicular to its bars. Only if
+	 *  none of them gives a valid code, the scanlines of the profile are decoded, too.
+	 *  This finds codes at any angle, while the scanlines of a profile are horizontal.
+	 *  <p>
+	 *  The orientation isn't estimated for progressive runs and for a GreyDevice that 
+	 *  contains only some rows, because the estimator samples rows from the whole image.
+	 *  A presence detector also checks the scanlines across the bars, so it doesn't 
+	 *  reject rotated codes.
+	 *  
+	 *  @param listener receives the time spent in the different stages, or null.
+	 *  @param subpixel_edges true, if the field lengths should be measured with sub-pixel accuracy.
+	 *  @param presence_detector decides whether an image is decoded, or null if all 
+	 *         images should be decoded.
+	 *  @param orientation_estimator places the first scanlines, or null if only the 
+	 *         scanlines of the profile should be decoded.
+	 */
+	//---------------------------------------------------------------------------------------
+	public BarcodeDecoder(DecodeListener listener, boolean subpixel_edges, PresenceDetector presence_detector,
+			OrientationEstimator orientation_estimator) {
+		this.listener = listener;
+		this.subpixel_edges = subpixel_edges;
+		this.presence_detector = presence_detector;
+		this.orientation_estimator = orientation_estimator;
+		this.decoder_ean13 = new Decoder_EAN13();
+	}
 
 	//---------------------------------------------------------------------------------------
 	// METHODS
@@ -148,98 +257,398 @@ public class BarcodeDecoder {
 	 *  @author Robert Adelmann        
 	 */
 	//---------------------------------------------------------------------------------------
-	public static Barcode recognizeBarcode(Device device) {
+	public Barcode recognizeBarcode(Device device) {
+		return decode(device).getBarcode();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Performs a recognition run using the parameters of the given profile.
+	 *  
+	 *  @param device Provides access to device specific functionality.
+	 *  @param profile contains the scanlines and all other parameters of the recognition.
+	 *  
+	 *  @return The recognized Barcode. (All digits that could not be recognized
+	 *          have a value of -1)
+	 */
+	//---------------------------------------------------------------------------------------
+	public Barcode recognizeBarcode(Device device, DecoderProfile profile) {
+		return decode(device, profile).getBarcode();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Performs a recognition run and returns the recognized barcode together with 
+	 *  the information about how it has been obtained: the votes and vote margins for 
+	 *  each digit, the scanlines that agree with the barcode and the elapsed time.
+	 *  
+	 *  @param device Provides access to device specific functionality.
+	 *  
+	 *  @return The result of the recognition run.
+	 *  
+	 *  @see DecodeResult
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeResult decode(Device device) {
+		return decode(device, DecoderProfile.BALANCED);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Performs a recognition run along the scanlines specified by the given plan.
+	 *  
+	 *  @param device Provides access to device specific functionality.
+	 *  @param plan specifies the number and the position of the scanlines.
+	 *  
+	 *  @return The result of the recognition run.
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeResult decode(Device device, ScanPlan plan) {
+		return decode(device, DecoderProfile.BALANCED.withScanPlan(plan));
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Performs a recognition run using the parameters of the given profile.
+	 *  
+	 *  @param device Provides access to device specific functionality.
+	 *  @param profile contains the scanlines and all other parameters of the recognition.
+	 *  
+	 *  @return The result of the recognition run.
+	 *  
+	 *  @see DecoderProfile#FAST
+	 *  @see DecoderProfile#BALANCED
+	 *  @see DecoderProfile#THOROUGH
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeResult decode(Device device, DecoderProfile profile) {
+		return decode(device, profile, null, 0);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Performs a recognition run on an image whose rows are still arriving. Each 
+	 *  scanline is decoded as soon as its rows have arrived. When the given number of 
+	 *  scanlines agree on a valid code, the device is stopped and the remaining 
+	 *  scanlines are skipped. 
+	 *  <p>
+	 *  The presence detector of this decoder is not used, because it samples rows
+	 *  from the whole image.
+	 *  
+	 *  @param device provides the rows of the image as they arrive.
+	 *  @param profile contains the scanlines and all other parameters of the recognition.
+	 *  @param min_agreeing_scanlines the number of scanlines with the same valid code 
+	 *         after which the result is considered to be confident.
+	 *  
+	 *  @return The result of the recognition run, containing only the scanlines that 
+	 *          have been decoded.
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeResult decode(ProgressiveDevice device, DecoderProfile profile, int min_agreeing_scanlines) {
+		if (min_agreeing_scanlines <= 0) throw new IllegalArgumentException("min_agreeing_scanlines must be positive: " + min_agreeing_scanlines);
+		return decode(device, profile, device, min_agreeing_scanlines);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Performs a recognition run.
+	 *  
+	 *  @param device Provides access to device specific functionality.
+	 *  @param profile contains the scanlines and all other parameters of the recognition.
+	 *  @param progressive the device as a ProgressiveDevice, if the decoder should wait for
+	 *         the rows of each scanline and stop early, otherwise null.
+	 *  @param min_agreeing_scanlines the number of scanlines with the same valid code
+	 *         after which a progressive run stops.
+	 *  
+	 *  @return The result of the recognition run.
+	 */
+	//---------------------------------------------------------------------------------------
+	private DecodeResult decode(Device device, DecoderProfile profile, ProgressiveDevice progressive, int min_agreeing_scanlines) {
+		DecodeEvent event = new DecodeEvent();
+		event.begin();
+		DecodeResult result = decodeScanlines(device, profile, progressive, min_agreeing_scanlines);
+		event.report(device, result);
+		return result;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Performs the recognition run of decode(Device, DecoderProfile, ProgressiveDevice, int). */
+	//---------------------------------------------------------------------------------------
+	private DecodeResult decodeScanlines(Device device, DecoderProfile profile, ProgressiveDevice progressive, int min_agreeing_scanlines) {
+
+		long decode_start = System.nanoTime();
 
 		// PARAMETERS:
-		int amount_scanlines = 100;
 		int w = device.getImageWidth();
 		int h = device.getImageHeight();
+		int scanlines[][] = profile.getScanPlan().getScanlines(w, h);
+
+		// skip images that surely contain no barcode, and decode the scanlines across the
+		// bars first:
+		int[][] oriented = ((progressive == null) && isCompleteImage(device)) ? locateBarcode(device) : new int[0][];
+		if (oriented == null) return createRejectedResult(new int[scanlines.length][], new int[scanlines.length][], decode_start);
+		int amount_oriented = oriented.length;
+		scanlines = concat(oriented, scanlines);
+		int amount_scanlines = scanlines.length;
 
 		// the array which will contain the result:
-		int numbers[][] = new int[amount_scanlines][13];
+		// (null for scanlines without result)
+		int numbers[][] = new int[amount_scanlines][];
+		int scanline_positions[][] = new int[amount_scanlines][];
+		Barcode_EAN13Half halves[][] = new Barcode_EAN13Half[amount_scanlines][];
+		boolean reused[] = new boolean[amount_scanlines];
 
 		// temporary variables:
-		int raw_path[][];
-		int x1, x2, y1, y2;
+		Scratch scratch = new Scratch();
+		PatternMemory patterns = new PatternMemory();
+
+		// a session provides cached greyscale values:
+		DecodeSession session = (device instanceof DecodeSession) ? (DecodeSession) device : null;
 
 		Barcode_EAN13 ean13_code;
 
-		// generate and initialize the array that will contain all detected 
-		// digits at a specific code position: 
-		int possible_numbers[][][] = new int[10][13][2];
-		for (int i = 0; i < 10; i++) {
-			for (int j = 0; j < 13; j++) {
-				possible_numbers[i][j][0] = -1;
-				possible_numbers[i][j][1] = 0;
-			}
-		}
+		// the votes for the digits at each code position:
+		DigitHistogram histogram = new DigitHistogram();
 
 		int successfull_lines = 0;
 
 		// try to detect the barcode along scanlines:
 		for (int i = 0; i < amount_scanlines; i++) {
-			x1 = 0;
-			y1 = (h / amount_scanlines) * i;
-
-			x2 = w - 1;
-			y2 = y1;
 
-			//y1 = y2 = h/3+1;
+			// the scanlines of the plan are only needed if those across the bars have failed:
+			if ((i == amount_oriented) && (successfull_lines > 0)) {
+				amount_scanlines = i;
+				break;
+			}
 
-			// get the RGB values along the line/path:
-			raw_path = device.getPath(x1, y1, x2, y2, w);
+			// wait for the rows of the scanline, including the row below it for bilinear sampling:
+			// (the scanlines are ordered from top to bottom, so all further ones are missing too)
+			if ((progressive != null) && !awaitRows(progressive, Math.min(h, Math.max(scanlines[i][1], scanlines[i][3]) + 2))) {
+				amount_scanlines = i;
+				break;
+			}
 
-			// try to recognize a barcode along that path:
-			ean13_code = (Barcode_EAN13) recognizeCode(raw_path, x1, y1, x2, y2, device);
+			// try to recognize a barcode along the scanline:
+			ean13_code = decodeScanline(device, session, scanlines[i], i, profile, scratch, patterns);
 
 			if (ean13_code != null) {
 				
 				numbers[i] = ean13_code.getNumbers();
+				scanline_positions[i] = scanlines[i].clone();
+				halves[i] = scratch.halves;
+				reused[i] = scratch.reused;
 				
-				if (ean13_code.isValid()) {
-					successfull_lines++;
-                    // add the recognized digits to the array of possible numbers:
-					addNumberToPossibleNumbers(numbers[i], possible_numbers, true);
-				} else {
-					numbers[i] = ean13_code.getNumbers();
-                    // add the recognized digits to the array of possible numbers:
-					addNumberToPossibleNumbers(numbers[i], possible_numbers, false);
-				}
+				// add the recognized digits to the histogram:
+				if (ean13_code.isValid()) successfull_lines++;
+				histogram.add(numbers[i], ean13_code.isValid(), i);
 				
 				// show the information that has been recognized along the scanline:
 				if (debug) System.out.println("Scanline " + i + " result: " + ean13_code);
+
+				// stop a progressive run as soon as enough scanlines agree on a valid code:
+				if ((progressive != null) && ean13_code.isValid() && (countEqualCodes(numbers, reused, i) >= min_agreeing_scanlines)) {
+					progressive.stop();
+					amount_scanlines = i + 1;
+					break;
+				}
 			}
 		}
+		if (amount_scanlines < numbers.length) {
+			numbers = Arrays.copyOf(numbers, amount_scanlines);
+			scanline_positions = Arrays.copyOf(scanline_positions, amount_scanlines);
+			halves = Arrays.copyOf(halves, amount_scanlines);
+			reused = Arrays.copyOf(reused, amount_scanlines);
+		}
+
+		return resolveBarcode(histogram, numbers, scanline_positions, halves, reused, profile, decode_start);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Recognizes the barcodes on several images at once, with the default parameters
+	 *  and the common fork/join pool.
+	 *  
+	 *  @see #recognizeAll(List, DecoderProfile, ForkJoinPool)
+	 */
+	//---------------------------------------------------------------------------------------
+	public List<DecodeResult> recognizeAll(List<? extends Device> devices) {
+		return recognizeAll(devices, DecoderProfile.BALANCED, ForkJoinPool.commonPool());
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Recognizes the barcodes on several images at once, using the common fork/join pool.
+	 *  
+	 *  @see #recognizeAll(List, DecoderProfile, ForkJoinPool)
+	 */
+	//---------------------------------------------------------------------------------------
+	public List<DecodeResult> recognizeAll(List<? extends Device> devices, DecoderProfile profile) {
+		return recognizeAll(devices, profile, ForkJoinPool.commonPool());
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Recognizes the barcodes on several images at once. 
+	 *  <p>
+	 *  The work is not split per image, but per group of scanlines: every image is a task
+	 *  that splits its scanlines into subtasks of a few scanlines each. Idle threads of 
+	 *  the pool steal these subtasks, so a large image is decoded by all threads instead
+	 *  of keeping one thread busy while the others have finished with the small images.
+	 *  Each subtask counts its votes in its own DigitHistogram, the histograms of an 
+	 *  image are merged when its subtasks are joined.
+	 *  <p>
+	 *  The subtasks of an image share the module patterns of its valid scanlines, so a
+	 *  scanline can reuse the code of a scanline decoded by another thread. Which 
+	 *  scanlines reuse a code depends on the order in which the threads decode them, so 
+	 *  the votes and the agreeing scanlines of a result can differ slightly from those of
+	 *  decode(device, profile), and between two calls.
+	 *  <p>
+	 *  The devices must allow getPath() to be called by several threads at the same time,
+	 *  as ImageDevice does. The scanlines of a DecodeSession are decoded by a single 
+	 *  task, because the session converts its rows on demand.
+	 *  
+	 *  @param devices the images to decode.
+	 *  @param profile contains the scanlines and all other parameters of the recognition.
+	 *  @param pool executes the tasks.
+	 *  
+	 *  @return the results of the recognition runs, in the order of the given devices.
+	 */
+	//---------------------------------------------------------------------------------------
+	public List<DecodeResult> recognizeAll(List<? extends Device> devices, DecoderProfile profile, ForkJoinPool pool) {
+		DecodeResult[] results = new DecodeResult[devices.size()];
+		pool.invoke(new BatchTask(devices, profile, results));
+		return Arrays.asList(results);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Samples the greyscale values along a scanline and tries to recognize a barcode 
+	 *  along it.
+	 *  
+	 *  @param device Provides access to device specific functionality.
+	 *  @param session the device as a DecodeSession, or null.
+	 *  @param scanline x1, y1, x2, y2 of the scanline.
+	 *  @param index the index of the scanline within the recognition run.
+	 *  @param profile contains the parameters of the recognition.
+	 *  @param scratch contains the buffers that are reused for all scanlines of one run.
+	 *  @param patterns the module patterns of the valid scanlines of the image.
+	 *  
+	 *  @return The recognized Barcode, or null.
+	 */
+	//---------------------------------------------------------------------------------------
+	private Barcode_EAN13 decodeScanline(Device device, DecodeSession session, int[] scanline, int index, 
+			DecoderProfile profile, Scratch scratch, PatternMemory patterns) {
+
+		ScanlineEvent event = new ScanlineEvent();
+		event.begin();
+		long stage_start = 0;
+		int w = device.getImageWidth();
+		int path_length;
+		int x1 = scanline[0];
+		int y1 = scanline[1];
+		int x2 = scanline[2];
+		int y2 = scanline[3];
+
+		// get the greyscale values along the line/path:
+		if (listener != null) stage_start = System.nanoTime();
+		if (session != null) {
+			path_length = session.getPathLength(x1, y1, x2, y2);
+			scratch.ensureCapacity(path_length);
+			session.getGreyPath(x1, y1, x2, y2, scratch.grey_line);
+		} else {
+			int[][] raw_path = device.getPath(x1, y1, x2, y2, w);
+			path_length = raw_path.length;
+			scratch.ensureCapacity(path_length);
+			createGreyLine(raw_path, scratch.grey_line);
+		}
+		if (listener != null) listener.stageCompleted(DecodeListener.STAGE_PATH_SAMPLING, System.nanoTime() - stage_start);
+
+		// try to recognize a barcode along that path:
+		Barcode_EAN13 ean13_code = (Barcode_EAN13) recognizeCode(scratch.grey_line, path_length, profile, scratch, patterns);
+
+		if (listener != null) listener.scanlineCompleted(isRecognized(ean13_code), (ean13_code != null) && ean13_code.isValid());
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.imageWidth = w;
+			event.imageHeight = device.getImageHeight();
+			event.index = index;
+			event.x1 = x1;
+			event.y1 = y1;
+			event.x2 = x2;
+			event.y2 = y2;
+			event.pathLength = path_length;
+			event.fieldCount = scratch.field_count;
+			event.recognized = isRecognized(ean13_code);
+			event.valid = (ean13_code != null) && ean13_code.isValid();
+			event.reused = scratch.reused;
+			event.commit();
+		}
+		return ean13_code;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates the result for an image that has been rejected by the presence detector. */
+	//---------------------------------------------------------------------------------------
+	private DecodeResult createRejectedResult(int[][] numbers, int[][] scanline_positions, long decode_start) {
+		DigitHistogram histogram = new DigitHistogram();
+		DecodeResult result = createResult(new Barcode_EAN13(histogram.getBestDigits()), histogram, numbers, 
+			new boolean[numbers.length], scanline_positions, decode_start);
+		if (listener != null) listener.decodeCompleted(result.getElapsedNanos(), false);
+		return result;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Selects the barcode from the votes of all scanlines and creates the result of 
+	 *  the recognition run.
+	 *  
+	 *  @param histogram the votes for the digits at each position.
+	 *  @param numbers the digits recognized along each scanline. (null for scanlines without result)
+	 *  @param scanline_positions x1, y1, x2, y2 of each scanline.
+	 *  @param halves the halves recognized along each scanline whose code isn't valid. (null
+	 *         for scanlines without halves)
+	 *  @param reused true for the scanlines that have reused the code of another scanline.
+	 *  @param profile contains the max. number of digit combinations to try.
+	 *  @param decode_start the value of System.nanoTime() at the start of the run.
+	 *  
+	 *  @return the result of the recognition run.
+	 */
+	//---------------------------------------------------------------------------------------
+	private DecodeResult resolveBarcode(DigitHistogram histogram, int[][] numbers, int[][] scanline_positions, 
+			Barcode_EAN13Half[][] halves, boolean[] reused, DecoderProfile profile, long decode_start) {
 
-		// sort the detected digits at each code position, in accordance to the 
-		// amount of their detection:
-		sortDigits(possible_numbers);
+		int max_amount_of_considered_codes = profile.getMaxAmountOfConsideredCodes();
+		long stage_start = 0;
+		if (listener != null) stage_start = System.nanoTime();
 
-		// print out the array that contains the possible digits at each code position, anf
-		// the amount of their occurence/detection:
+		// print out the possible digits at each code position, and the amount of 
+		// their occurence/detection:
 		if (debug) {
 			System.out.println();
-			System.out.println("detected digits:");
-			printArray(possible_numbers, 0);
-			System.out.println("# of their occurence:");
-			printArray(possible_numbers, 1);
+			System.out.println(histogram);
 		}
 
 		// get the most likely barcode:
-		Barcode code = extractBarcode(possible_numbers);
+		Barcode_EAN13 code = new Barcode_EAN13(histogram.getBestDigits());
 
-		return code;
+		// if it isn't valid, combine the halves that have been recognized along different scanlines:
+		if ((!code.isValid()) && (stitchHalves(halves, scanline_positions, histogram) > 0)) {
+			code = new Barcode_EAN13(histogram.getBestDigits());
+		}
+
+		// if it still isn't valid, search the alternative digits for a valid combination:
+		if ((!code.isValid()) && (max_amount_of_considered_codes > 0)) code = (Barcode_EAN13) detectValidBarcode(histogram, max_amount_of_considered_codes, numbers, reused);
+
+		DecodeResult result = createResult(code, histogram, numbers, reused, scanline_positions, decode_start);
 
+		if (listener != null) {
+			long end = System.nanoTime();
+			listener.stageCompleted(DecodeListener.STAGE_VOTE_RESOLUTION, end - stage_start);
+			listener.decodeCompleted(end - decode_start, code.isValid());
+		}
+
+		return result;
 	}
 
 	//---------------------------------------------------------------------------------------
 	/** Tries to recognize a barcode along a certain scanline.
 	 *  
-	 *  @param raw_path contains the pixel information (rgb values) along a scanline.
-	 *  @param x1,x2,y1,y2 specify the position of this scanline. (only used for
-	 *         the displaying of the red scanlines on the device's screen during recognition)
-	 *  @param device is used to get access to the device's screen for displaying
-	 *         some information. (in this case the red scanlines)
+	 *  @param grey_line contains the greyscale values along a scanline.
+	 *  @param w the length of the scanline.
+	 *  @param profile contains the parameters of the recognition.
+	 *  @param scratch contains the buffers that are reused for all scanlines of one run.
+	 *         If the recognized code isn't valid, its halves are stored in scratch.halves.
+	 *  @param patterns the module patterns of the valid scanlines of the image.
 	 *         
 	 *  @return The recognized Barcode. (All digits that could not be recognized
 	 *          have a value of -1)
@@ -247,248 +656,588 @@ public class BarcodeDecoder {
 	 *  @author Robert Adelmann           
 	 */
 	//---------------------------------------------------------------------------------------
-	private static Barcode recognizeCode(int[][] raw_path, int x1, int y1, int x2, int y2, Device device) {
+	private Barcode recognizeCode(int[] grey_line, int w, DecoderProfile profile, Scratch scratch, PatternMemory patterns) {
+
+		long stage_start = 0;
+		long stage_end;
+		scratch.halves = null;
+		scratch.field_count = 0;
+		scratch.reused = false;
+		if (w < 2) return new Barcode_EAN13((int[]) null);
 
 		// convert the given path into a string of black and white pixels:
-		int string[] = transformPathToBW(raw_path);
+		if (listener != null) stage_start = System.nanoTime();
+		int string[] = transformGreyLineToBW(grey_line, w, scratch.bw_line, profile);
+		if (listener != null) {
+			stage_end = System.nanoTime();
+			listener.stageCompleted(DecodeListener.STAGE_BINARIZATION, stage_end - stage_start);
+			stage_start = stage_end;
+		}
 
 		// convert the string of black&white pixels into a list, containing
 		// information about the black and white fields
 		// first indes = field nr.
 		// second index: 0 = color of the field
 		//               1 = field length
-		int fields[][] = extractFieldInformation(string);
+		//               (in 1/SUBPIXEL_SCALE pixels if subpixel_edges is set)
+		int fields[][];
+		if (subpixel_edges) fields = extractEdgeFieldInformation(grey_line, string, w, scratch.temp_fields);
+		else fields = extractFieldInformation(string, w, scratch.temp_fields);
+		scratch.field_count = fields.length;
+		if (listener != null) {
+			stage_end = System.nanoTime();
+			listener.stageCompleted(DecodeListener.STAGE_FIELD_EXTRACTION, stage_end - stage_start);
+			stage_start = stage_end;
+		}
 
-		// try to recognize a EAN13 code:
-		Barcode barcode = Decoder_EAN13.recognize(fields);
+		// neighbouring scanlines across a barcode have nearly the same fields; if their
+		// bars and spaces normalized to modules are those of an earlier valid scanline, 
+		// its code is taken and gets the votes of this scanline too:
+		boolean has_pattern = getModulePattern(fields, scratch.pattern);
+		if (has_pattern) {
+			Barcode_EAN13 remembered = patterns.find(scratch.pattern);
+			if (remembered != null) {
+				scratch.reused = true;
+				Barcode_EAN13 barcode = new Barcode_EAN13(remembered.getNumbers());
+				if (listener != null) listener.stageCompleted(DecodeListener.STAGE_DIGIT_MATCHING, System.nanoTime() - stage_start);
+				return barcode;
+			}
+		}
+
+		// try to recognize a EAN13 code, and if it isn't valid, at least one of its halves:
+		int scale = subpixel_edges ? SUBPIXEL_SCALE : 1;
+		Barcode_EAN13 barcode = decoder_ean13.recognize(fields, scale, profile);
+		if (!barcode.isValid()) scratch.halves = decoder_ean13.recognizeHalves(fields, scale, profile);
+		else if (has_pattern) patterns.remember(scratch.pattern, barcode);
+		if (listener != null) listener.stageCompleted(DecodeListener.STAGE_DIGIT_MATCHING, System.nanoTime() - stage_start);
 		return barcode;
 	}
 
 	//---------------------------------------------------------------------------------------
-	/** Adds the given code digits to the array of possible digits,
-	 *  if they are not already contained in it.
+	/** Waits until the given number of rows of a progressive device has arrived. 
 	 *  
-	 *  @param number An array with 13 entries, containing the digits of a code, or
-	 *                -1 for non recognized digits.
-	 *  @param possible_numbers Three dim. array, containing information about 
-	 *         the occurence of a certain digit at a certain position (1..13) and
-	 *         the amount of its occurence.<p>
-	 *         
-     *         The first dimension has 13 entries and represents the position in the EAN13 code.
-     *         The second dimension has 10 entries and works like a stack for the digits recognized
-     *         at that position in the EAN13 code.<br>
-     *         The third dimension has two elements: <br> 0 = specifies the digit itself (0..9), 
-     *                                               <br> 1 = the amount of this digit's occurence  
-     *                                            at that position in the EAN13 code (0..#scanlines)
-	 *  @param correct_code specifies if the given numbers belong to a correctly recognized code or not.
-	 *         If the code is a correct one, its digits will be rated higher, e.g. their occurence value
-	 *         will be increased by 100 and not only by one like in case of an incorrect code.         
-	 *                                                                                                      
-	 *  @see #printArray(int[][][], int)
-	 *  @see #sortDigits(int[][][])  
-	 *  
-	 *  @author Robert Adelmann                                                        
-     */
-	//---------------------------------------------------------------------------------------
-	private static void addNumberToPossibleNumbers(int[] number, int[][][] possible_numbers, boolean correct_code) {
-
-		int i;
-		boolean digit_contained;
-		for (int j = 0; j < 13; j++) {
+	 *  @return false if the rows will never arrive, or the thread has been interrupted.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static boolean awaitRows(ProgressiveDevice device, int rows) {
+		try {
+			return device.awaitRows(rows) >= rows;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
 
-			if (number[j] >= 0) {
-				i = 0;
-				digit_contained = false;
-				while ((i < 10) && (possible_numbers[i][j][0] >= 0)) {
-					if (possible_numbers[i][j][0] == number[j]) {
-						digit_contained = true;
-						if (correct_code) possible_numbers[i][j][1] = possible_numbers[i][j][1] + 100; else possible_numbers[i][j][1]++;
-						break;
-					}
-					i++;
-				}
-				if ((i < 10) && (!digit_contained)) {
-					// add new digit:
-					possible_numbers[i][j][0] = number[j];
-					if (correct_code) possible_numbers[i][j][1] = possible_numbers[i][j][1] + 100; else possible_numbers[i][j][1]++;
-				}
+	//---------------------------------------------------------------------------------------
+	/** Counts the scanlines up to the given one that have recognized the same digits
+	 *  as the given one.
+	 *  
+	 *  @param numbers the digits recognized along each scanline. (null for scanlines without result)
+	 *  @param reused true for the scanlines that have reused the code of another scanline. 
+	 *         (they aren't counted)
+	 *  @param index the index of the scanline whose digits should be counted.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static int countEqualCodes(int[][] numbers, boolean[] reused, int index) {
+		int count = 0;
+		for (int i = 0; i <= index; i++) {
+			if ((numbers[i] != null) && !reused[i] && Arrays.equals(numbers[i], numbers[index])) count++;
+		}
+		return count;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns true if one of the first scanlines has given a valid code. (like the 
+	 *  sequential run, digits that haven't been recognized make a code invalid)
+	 *  
+	 *  @param numbers the digits recognized along each scanline. (null for scanlines without result)
+	 *  @param amount_scanlines the number of scanlines to check.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static boolean containsValidCode(int[][] numbers, int amount_scanlines) {
+		for (int i = 0; i < amount_scanlines; i++) {
+			if ((numbers[i] != null) && new Barcode_EAN13(numbers[i]).isValid()) return true;
+		}
+		return false;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Estimates the orientation of the barcode and checks whether the image may contain
+	 *  a barcode at all, as far as this decoder has an estimator and a detector. The 
+	 *  detector also checks the scanlines across the estimated bars, because its own 
+	 *  rows are horizontal and would reject rotated codes.
+	 *  
+	 *  @return the scanlines across the bars (empty without an estimator), or null if 
+	 *          the image surely contains no barcode.
+	 */
+	//---------------------------------------------------------------------------------------
+	private int[][] locateBarcode(Device device) {
+		int[][] oriented = (orientation_estimator != null) ? orientation_estimator.getScanlines(device) : new int[0][];
+		if ((presence_detector != null) && !presence_detector.mayContainBarcode(device, oriented)) return null;
+		return oriented;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns false for a GreyDevice that contains only some rows of the image, like the
+	 *  frames of the NetpbmReader, which keep the rows of the scanlines. The presence 
+	 *  detector and the orientation estimator read other rows, so they are skipped for 
+	 *  such devices, and only the scanlines of the profile are decoded.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static boolean isCompleteImage(Device device) {
+		if (device instanceof DecodeSession) device = ((DecodeSession) device).getDevice();
+		if (!(device instanceof GreyDevice)) return true;
+		GreyDevice grey_device = (GreyDevice) device;
+		return grey_device.getStoredRows() == grey_device.getImageHeight();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the scanlines of the first array followed by those of the second one. */
+	//---------------------------------------------------------------------------------------
+	private static int[][] concat(int[][] first, int[][] second) {
+		if (first.length == 0) return second;
+		int[][] scanlines = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, scanlines, first.length, second.length);
+		return scanlines;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Searches the fields for 59 bars and spaces that form an EAN13 code, and returns
+	 *  their normalized widths as the signature of the scanline. 
+	 *  <p>
+	 *  As in edge-to-similar-edge decoding, the signature consists of the widths of each
+	 *  pair of adjacent fields, in modules of 1/95 of the width of the sequence, because
+	 *  these don't change when the bars are printed or binarized too wide. The widths are
+	 *  limited to the two to seven modules of an EAN13 code, and the pairs of the guards
+	 *  must be two modules wide. The digits aren't checked: blurred scanlines that are
+	 *  still recognized often don't add up to seven modules per digit.
+	 *  
+	 *  @param fields the fields along a scanline.
+	 *  @param pattern receives the widths (minus two) of the pairs of the first matching
+	 *         sequence, three bits per pair.
+	 *  
+	 *  @return true, if a matching sequence has been found.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static boolean getModulePattern(int[][] fields, long[] pattern) {
+		
+		// the first and the last field are the margins of the scanline:
+		long width = 0;
+		for (int i = 1; (i <= CODE_FIELDS) && (i < fields.length); i++) width += fields[i][1];
+		for (int start = 1; start + CODE_FIELDS < fields.length; start++) {
+			if (start > 1) width += fields[start + CODE_FIELDS - 1][1] - fields[start - 1][1];
+			if ((fields[start][0] != 0) || (width <= 0)) continue;
+
+			pattern[0] = 0;
+			pattern[1] = 0;
+			pattern[2] = 0;
+			int i = 0;
+			for (; i < CODE_FIELDS - 1; i++) {
+				long pair = fields[start + i][1] + fields[start + i + 1][1];
+				int modules = (int) ((pair * (2L * CODE_MODULES) + width) / (2 * width));
+				if ((modules < 1) || (modules > 8)) break;
+				modules = Math.max(2, Math.min(7, modules));
+				
+				// the guards: (start: fields 0..2, middle: 27..31, end: 56..58)
+				if ((modules != 2) && ((i < 2) || ((i >= 27) && (i < 31)) || (i >= 56))) break;
+
+				pattern[i / 21] |= ((long) (modules - 2)) << ((i % 21) * 3);
 			}
+			if (i == CODE_FIELDS - 1) return true;
 		}
+		return false;
+	}
 
+	//---------------------------------------------------------------------------------------
+	/** Returns true if at least one digit of the given code has been recognized.
+	 *  
+	 *  @param code the code recognized along a scanline, or null.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static boolean isRecognized(Barcode_EAN13 code) {
+		if (code == null) return false;
+		int[] numbers = code.getNumbers();
+		for (int i = 0; i < numbers.length; i++) {
+			if (numbers[i] >= 0) return true;
+		}
+		return false;
 	}
 
 	//---------------------------------------------------------------------------------------
-	/** Sorts the values contained in the specified  possible number array, dependent
-	 *  on the amount of the digit's occurence. (So far simple bubble sort is used.)
-	 *  The digits that occure most often will appear on top.
+	/** Returns true if all 13 digits have been recognized along a scanline and are equal
+	 *  to those of the given code.
 	 *  
-	 *  @param possible_numbers Three dim. array, containing information about 
-	 *         the occurence of a certain digit at a certain position (1..13) and
-	 *         the amount of its occurence.
-	 *         
-	 * 	@author Robert Adelmann                         
+	 *  @param numbers the digits recognized along the scanline.
+	 *  @param code the digits of the code.
 	 */
 	//---------------------------------------------------------------------------------------
-	private static void sortDigits(int[][][] possible_numbers) {
-		int i;
-		int temp_value;
-		int temp_occurence;
-		boolean changes;
+	private static boolean agrees(int[] numbers, int[] code) {
+		for (int i = 0; i < 13; i++) {
+			if ((numbers[i] < 0) || (numbers[i] != code[i])) return false;
+		}
+		return true;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return true, if the field lengths are measured with sub-pixel accuracy. */
+	//---------------------------------------------------------------------------------------
+	public boolean isSubpixelEdges() {
+		return subpixel_edges;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the listener that is informed about the recognition runs, or null. */
+	//---------------------------------------------------------------------------------------
+	public DecodeListener getDecodeListener() {
+		return listener;
+	}
 
+	//---------------------------------------------------------------------------------------
+	/** @return the detector that skips images without a barcode, or null. */
+	//---------------------------------------------------------------------------------------
+	public PresenceDetector getPresenceDetector() {
+		return presence_detector;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the estimator that adds scanlines across the bars of the barcode, or null. */
+	//---------------------------------------------------------------------------------------
+	public OrientationEstimator getOrientationEstimator() {
+		return orientation_estimator;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates the result of a recognition run, containing the votes of the selected digits,
+	 *  the margins to the runner up digits and the positions of the scanlines that agree
+	 *  with the selected code. A scanline only agrees if it has recognized all 13 digits
+	 *  of the code; a scanline that has recognized a few matching digits hasn't confirmed
+	 *  the code. Scanlines that have reused the
+	 *  code of another scanline haven't confirmed it on their own, so they are counted 
+	 *  separately instead of being added to the agreeing scanlines.
+	 *  
+	 *  @param code the selected barcode.
+	 *  @param histogram the votes for the digits at each position.
+	 *  @param numbers the digits recognized along each scanline. (null for scanlines without result)
+	 *  @param reused true for the scanlines that have reused the code of another scanline.
+	 *  @param scanline_positions x1, y1, x2, y2 of each scanline.
+	 *  @param decode_start the value of System.nanoTime() at the start of the run.
+	 *  
+	 *  @return the result of the recognition run.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static DecodeResult createResult(Barcode_EAN13 code, DigitHistogram histogram, int[][] numbers,
+			boolean[] reused, int[][] scanline_positions, long decode_start) {
+
+		// collect the votes and vote margins of the selected digits. (the margin is negative
+		// if a digit has been selected by detectValidBarcode() against the majority)
+		int[] code_numbers = code.getNumbers();
+		int[] votes = new int[13];
+		int[] vote_margins = new int[13];
 		for (int j = 0; j < 13; j++) {
+			if (code_numbers[j] < 0) continue;
+			votes[j] = histogram.getVotes(j, code_numbers[j]);
+			vote_margins[j] = votes[j] - histogram.getBestOtherVotes(j, code_numbers[j]);
+		}
 
-			i = 1;
-			changes = false;
-			while (true) {
+		// collect the scanlines that agree with the selected code:
+		int hit_count = 0;
+		int reused_count = 0;
+		int[][] temp_hits = new int[numbers.length][];
+		int[][] temp_reused = new int[numbers.length][];
+		for (int i = 0; i < numbers.length; i++) {
+			if ((numbers[i] == null) || !agrees(numbers[i], code_numbers)) continue;
+			if (reused[i]) temp_reused[reused_count++] = scanline_positions[i];
+			else temp_hits[hit_count++] = scanline_positions[i];
+		}
+		int[][] hits = new int[hit_count][];
+		System.arraycopy(temp_hits, 0, hits, 0, hit_count);
+		int[][] reused_hits = new int[reused_count][];
+		System.arraycopy(temp_reused, 0, reused_hits, 0, reused_count);
 
-				if ((possible_numbers[i - 1][j][0] >= 0) && (possible_numbers[i][j][0] >= 0)) {
-					if (possible_numbers[i - 1][j][1] < possible_numbers[i][j][1]) {
-						temp_value = possible_numbers[i - 1][j][0];
-						temp_occurence = possible_numbers[i - 1][j][1];
-						possible_numbers[i - 1][j][0] = possible_numbers[i][j][0];
-						possible_numbers[i - 1][j][1] = possible_numbers[i][j][1];
-						possible_numbers[i][j][0] = temp_value;
-						possible_numbers[i][j][1] = temp_occurence;
+		return new DecodeResult(code, votes, vote_margins, numbers.length, hits, reused_hits, System.nanoTime() - decode_start);
+	}
 
-						changes = true;
+	//---------------------------------------------------------------------------------------
+	/** Combines left and right halves of a barcode that have been recognized along 
+	 *  different scanlines. This recognizes codes where each scanline is disturbed in 
+	 *  one half, e.g. by a reflection, but the undisturbed halves are at different rows.
+	 *  <p>
+	 *  A left and a right half are combined if their guards line up: their middle guards 
+	 *  must be at the same position along the scanline direction, their outer guards on 
+	 *  opposite sides, and their module widths must be similar. Every combination with a 
+	 *  correct checksum is added to the histogram like a valid scanline, if the same code
+	 *  has been combined from the left halves of at least MIN_STITCHED_LINES different 
+	 *  scanlines and the right halves of at least MIN_STITCHED_LINES different scanlines.
+	 *  A single misread half that is aligned with the halves of several neighbouring 
+	 *  scanlines therefore isn't enough. (One of ten 
+	 *  combinations with a misread digit has a correct checksum as well.)
+	 *  
+	 *  @param halves the halves recognized along each scanline. (null for scanlines without halves)
+	 *  @param scanline_positions x1, y1, x2, y2 of each scanline.
+	 *  @param histogram receives the votes of the combined codes.
+	 *  
+	 *  @return the number of combinations that have been added to the histogram.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static int stitchHalves(Barcode_EAN13Half[][] halves, int[][] scanline_positions, DigitHistogram histogram) {
+		int[] code = new int[13];
+		List<int[]> codes = new ArrayList<int[]>();
+		List<int[]> lines = new ArrayList<int[]>();  // the scanlines of the left and the right half
+		for (int a = 0; a < halves.length; a++) {
+			if (halves[a] == null) continue;
+			for (Barcode_EAN13Half left : halves[a]) {
+				if ((left == null) || !left.isLeftHalf()) continue;
+				
+				for (int b = 0; b < halves.length; b++) {
+					if (halves[b] == null) continue;
+					for (Barcode_EAN13Half right : halves[b]) {
+						if ((right == null) || right.isLeftHalf()) continue;
+						if (!isAligned(left, scanline_positions[a], right, scanline_positions[b])) continue;
+
+						System.arraycopy(left.getNumbers(), 0, code, 0, 7);
+						System.arraycopy(right.getNumbers(), 7, code, 7, 6);
+						if (!isValid(code)) continue;
+						
+						if (debug) System.out.println("Stitched scanlines " + a + " and " + b + ": " + new Barcode_EAN13(code));
+						codes.add(code.clone());
+						lines.add(new int[] { a, b });
 					}
 				}
+			}
+		}
 
-				if ((possible_numbers[i][j][0] < 0) || (i >= 9)) {
-					if (!changes) {
-						break;
-					} else {
-						i = 1;
-						changes = false;
-					}
-				} else {
-					i++;
+		// only use the codes whose left and right halves have each been recognized along 
+		// at least two different scanlines:
+		int stitched = 0;
+		for (int i = 0; i < codes.size(); i++) {
+			boolean[] left_lines = new boolean[halves.length];
+			boolean[] right_lines = new boolean[halves.length];
+			int amount_left_lines = 0;
+			int amount_right_lines = 0;
+			for (int j = 0; j < codes.size(); j++) {
+				if (!Arrays.equals(codes.get(i), codes.get(j))) continue;
+				int[] pair = lines.get(j);
+				if (!left_lines[pair[0]]) {
+					left_lines[pair[0]] = true;
+					amount_left_lines++;
+				}
+				if (!right_lines[pair[1]]) {
+					right_lines[pair[1]] = true;
+					amount_right_lines++;
 				}
-
 			}
+			if ((amount_left_lines < MIN_STITCHED_LINES) || (amount_right_lines < MIN_STITCHED_LINES)) continue;
+			histogram.add(codes.get(i), true, Math.max(lines.get(i)[0], lines.get(i)[1]));
+			stitched++;
 		}
+		return stitched;
 	}
 
 	//---------------------------------------------------------------------------------------
-	/** Returns the most likely detected barcode.
-	 * 
-	 *  @param possible_numbers Three dim. array, containing information about 
-	 *         the occurence of a certain digit at a certain position (1..13) and
-	 *         the amount of its occurence.
-	 *         
-	 *  @return the detected barcode 
-	 *         
-	 *  */
+	/** Checks if the guards of a left and a right half line up, so that they can belong 
+	 *  to the same barcode.
+	 *  
+	 *  @param left the left half.
+	 *  @param left_line x1, y1, x2, y2 of the scanline of the left half.
+	 *  @param right the right half.
+	 *  @param right_line x1, y1, x2, y2 of the scanline of the right half.
+	 */
 	//---------------------------------------------------------------------------------------
-	private static Barcode extractBarcode(int[][][] possible_numbers) {
-		// create and initialize the temporary variables:
-		int[] temp_code = new int[13];
-		for (int i = 0; i < 13; i++)
-			temp_code[i] = possible_numbers[0][i][0];
-		return new Barcode_EAN13(temp_code);
+	private static boolean isAligned(Barcode_EAN13Half left, int[] left_line, Barcode_EAN13Half right, int[] right_line) {
+
+		// the module widths must be similar:
+		float unit_length = Math.max(left.getUnitLength(), right.getUnitLength());
+		if (Math.abs(left.getUnitLength() - right.getUnitLength()) > 0.25f * unit_length) return false;
+
+		// the guard positions in image coordinates:
+		float[] left_middle = getPoint(left_line, left.getMiddleGuard());
+		float[] left_outer = getPoint(left_line, left.getOuterGuard());
+		float[] right_middle = getPoint(right_line, right.getMiddleGuard());
+		float[] right_outer = getPoint(right_line, right.getOuterGuard());
+
+		// the middle guards must be at the same position along the scanline, within two modules:
+		float length = (float) Math.sqrt(getSquaredLength(left_line));
+		float along = ((right_middle[0] - left_middle[0]) * (left_line[2] - left_line[0]) 
+			+ (right_middle[1] - left_middle[1]) * (left_line[3] - left_line[1])) / length;
+		if (Math.abs(along) > 2 * unit_length) return false;
+
+		// the outer guards must be on opposite sides of the middle guard:
+		float sides = (left_outer[0] - left_middle[0]) * (right_outer[0] - right_middle[0]) 
+			+ (left_outer[1] - left_middle[1]) * (right_outer[1] - right_middle[1]);
+		return sides < 0;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the image coordinates of the point at the given distance (in pixels) from 
+	 *          the start point of the scanline. */
+	//---------------------------------------------------------------------------------------
+	private static float[] getPoint(int[] line, float position) {
+		float length = (float) Math.sqrt(getSquaredLength(line));
+		if (length == 0) return new float[] { line[0], line[1] };
+		return new float[] { line[0] + (line[2] - line[0]) * position / length, line[1] + (line[3] - line[1]) * position / length };
+	}
+
+	private static double getSquaredLength(int[] line) {
+		double dx = line[2] - line[0];
+		double dy = line[3] - line[1];
+		return dx * dx + dy * dy;
 	}
 
 	//---------------------------------------------------------------------------------------
 	/** Trys to detect a valid barcode from the data collected by the different scanlines. 
 	 *  
-	 *  (Has been implemented so far non recursively with counters, 
-	 *  in order to save the overhead time of the recursive calls. 
-	 *  Would probably be clearer if it is implented recursively.)
+	 *  The digit combinations are tried in a best first order: the cost of a combination
+	 *  is the sum of the votes that are lost at each position by not selecting the
+	 *  top digit. Combinations are taken from a priority queue ordered by this cost, so
+	 *  alternatives for digits with a small vote margin are tried before alternatives 
+	 *  for digits that have been recognized with a large majority.
+	 *  <p>
+	 *  Every combination is generated exactly once: a successor of a combination only
+	 *  changes positions at or behind the position that has been changed last.
+	 *  <p>
+	 *  Because one of ten arbitrary combinations has a correct checksum, only digits 
+	 *  that have at least half the votes of the top digit at their position are
+	 *  considered as alternatives. Digits that have been outvoted clearly are never used.
+	 *  The system code and the checksum digit are never changed: the system code is
+	 *  derived from the parity of the left digits, and a changed checksum digit would 
+	 *  make almost any combination valid.
 	 *  
-	 *  @param array The three dim. array that should be printed. 
-	 *         (e.g. the array containing information about the occurrence of digits.) 
+	 *  @param histogram the votes for the digits at each position.
 	 *         
 	 *  @param max_amount_of_considered_codes contains the max. number of digit combinations to try, 
 	 *         util a valid barcode has been found.) 
 	 *         
-	 *  @return the detected barcode    
+	 *  @return the detected barcode, or the "most likely" code parts if no valid 
+	 *          combination could be found.   
 	 *  
 	 *  @author Robert Adelmann  
 	 */
 	//---------------------------------------------------------------------------------------
-	public static Barcode detectValidBarcode(int[][][] possible_numbers, int max_amount_of_considered_codes) {
-
-		Barcode_EAN13 code = null;
+	public static Barcode detectValidBarcode(DigitHistogram histogram, int max_amount_of_considered_codes) {
+		return detectValidBarcode(histogram, max_amount_of_considered_codes, null, null);
+	}
 
-		// create and initialize the temporary variables:
-		int[] temp_code = new int[13];
-		for (int i = 0; i < 13; i++)
-			temp_code[i] = possible_numbers[0][i][0];
+	//---------------------------------------------------------------------------------------
+	/** Trys to detect a valid barcode from the votes in the array format of earlier 
+	 *  versions.
+	 *  
+	 *  @param possible_numbers Three dim. array [rank][position][0 = digit, 1 = votes], 
+	 *         with -1 as digit for unused ranks.
+	 *  @param max_amount_of_considered_codes contains the max. number of digit combinations to try.
+	 *  
+	 *  @return the detected barcode, or the "most likely" code parts if no valid 
+	 *          combination could be found.
+	 *  
+	 *  @see #detectValidBarcode(DigitHistogram, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public static Barcode detectValidBarcode(int[][][] possible_numbers, int max_amount_of_considered_codes) {
+		DigitHistogram histogram = new DigitHistogram();
+		for (int i = 0; i < possible_numbers.length; i++) {
+			for (int j = 0; j < 13; j++) {
+				if (possible_numbers[i][j][0] >= 0) histogram.addVotes(j, possible_numbers[i][j][0], possible_numbers[i][j][1], i);
+			}
+		}
+		return detectValidBarcode(histogram, max_amount_of_considered_codes, null, null);
+	}
 
-		int alternative_amount = 0;
+	//---------------------------------------------------------------------------------------
+	/** Trys to detect a valid barcode like detectValidBarcode(DigitHistogram, int), but 
+	 *  only accepts combinations that are supported by the individual scanline results,
+	 *  and that at least one scanline has recognized completely on its own.
+	 *  
+	 *  @param histogram the votes for the digits at each position.
+	 *  @param max_amount_of_considered_codes contains the max. number of digit combinations to try.
+	 *  @param numbers the digits recognized along each scanline, or null if the combinations
+	 *         should not be checked against them. (null for scanlines without result)
+	 *  @param reused true for the scanlines that have reused the code of another scanline,
+	 *         or null if numbers is null.
+	 *         
+	 *  @return the detected barcode, or the "most likely" code parts if no valid 
+	 *          combination could be found.
+	 *  
+	 *  @see #isSupported(int[], int[][], boolean[])
+	 */
+	//---------------------------------------------------------------------------------------
+	private static Barcode detectValidBarcode(DigitHistogram histogram, int max_amount_of_considered_codes, int[][] numbers, 
+			boolean[] reused) {
 
-		int[] counter = new int[13];
-		int counter_nr = 11;
+		// the recognized digits at each position, ordered by their votes:
+		int[][] ranking = histogram.getRanking();
 
 		// check if there is at least one complete code present:
 		for (int i = 0; i < 13; i++) {
 			// exit and return the "most likely" code parts:
-			if (temp_code[i] < 0) return new Barcode_EAN13(temp_code);
+			if (ranking[i].length == 0) return new Barcode_EAN13(histogram.getBestDigits());
 		}
 
-		// if there is at least one complete node, try to detect a valid barcode:
-		while (alternative_amount < max_amount_of_considered_codes) {
+		// if there is at least one complete code, try to detect a valid barcode:
+		int[] temp_code = new int[13];
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+		queue.add(new Candidate(new int[13], 0, 1, 0));
+		int alternative_amount = 0;
+		int sequence = 1;
+
+		while ((!queue.isEmpty()) && (alternative_amount < max_amount_of_considered_codes)) {
+
+			Candidate candidate = queue.poll();
 
-			// fill the temporary code array with one possible version:
+			// fill the temporary code array with this version:
 			for (int i = 0; i < 13; i++)
-				temp_code[i] = possible_numbers[counter[i]][i][0];
+				temp_code[i] = ranking[i][candidate.ranks[i]];
 
 			alternative_amount++;
 
 			// check if this version represents a valid code:
-			if (isValid(temp_code)) {
-				code = new Barcode_EAN13(temp_code);
-				return code;
+			if (isValid(temp_code) && ((numbers == null) || isSupported(temp_code, numbers, reused))) {
+				return new Barcode_EAN13(temp_code);
 			}
 
-			// increment the counters:
-			if ((counter[counter_nr] < 9) && (possible_numbers[counter[counter_nr] + 1][counter_nr][0] >= 0)) {
-				// increment the actual counter.
-				counter[counter_nr]++;
-			} else {
+			// add the versions that select the next less likely digit at one position:
+			for (int j = candidate.last_position; j < 12; j++) {
+				int rank = candidate.ranks[j] + 1;
+				if (rank >= ranking[j].length) continue;
 
-				// check if we have reached the end and no valid barcode has been found:
-				if (counter_nr == 1) {
-					// exit and return the "most likely" code parts:
-					for (int i = 0; i < 13; i++)
-						temp_code[i] = possible_numbers[0][i][0];
-					return new Barcode_EAN13(temp_code);
-				} else {
-
-					// reset the actual counter and increment the next one(s):
-					counter[counter_nr] = 0;
-
-					while (true) {
-						if (counter_nr > 2) {
-							counter_nr--;
-						} else {
-							for (int i = 0; i < 13; i++)
-								temp_code[i] = possible_numbers[0][i][0];
-							return new Barcode_EAN13(temp_code);
-						}
-						if (counter[counter_nr] < 9) {
-							counter[counter_nr]++;
-							if (possible_numbers[counter[counter_nr]][counter_nr][0] < 0) {
-								counter[counter_nr] = 0;
-							} else {
-								break;
-							}
-						} else {
-							counter[counter_nr] = 0;
-						}
-					}
-					counter_nr = 12;
-				}
+				// only consider digits that have at least half the votes of the top digit:
+				int votes = histogram.getVotes(j, ranking[j][rank]);
+				if (votes * 2 < histogram.getVotes(j, ranking[j][0])) continue;
 
+				int[] ranks = candidate.ranks.clone();
+				ranks[j] = rank;
+				int cost = candidate.cost + histogram.getVotes(j, ranking[j][rank - 1]) - votes;
+				queue.add(new Candidate(ranks, cost, j, sequence++));
 			}
 		}
 
-		for (int i = 0; i < 13; i++)
-			temp_code[i] = possible_numbers[0][i][0];
-		return new Barcode_EAN13(temp_code);
+		// exit and return the "most likely" code parts:
+		return new Barcode_EAN13(histogram.getBestDigits());
 
 	}
 	
+	//---------------------------------------------------------------------------------------
+	/** Checks if a digit combination is supported by the scanline results: at least one
+	 *  scanline that hasn't reused the code of another scanline must have recognized all 
+	 *  13 digits of the combination. 
+	 *  <p>
+	 *  This rejects combinations that are assembled from single misread digits 
+	 *  of different scanlines and only happen to have a correct checksum. A scanline 
+	 *  that has recognized only a few digits doesn't support a combination, even if 
+	 *  none of its digits contradicts it.
+	 *  
+	 *  @param code the digit combination.
+	 *  @param numbers the digits recognized along each scanline. (null for scanlines without result)
+	 *  @param reused true for the scanlines that have reused the code of another scanline.
+	 *  
+	 *  @return true, if the combination has been recognized completely along a scanline.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static boolean isSupported(int[] code, int[][] numbers, boolean[] reused) {
+		for (int i = 0; i < numbers.length; i++) {
+			if ((numbers[i] != null) && !reused[i] && agrees(numbers[i], code)) return true;
+		}
+		return false;
+	}
+
 	//---------------------------------------------------------------------------------------
 	/** Return true if the given numbers represent a valid barcode. The barcode
 	 *  is valid, if the checksum is correct.
@@ -521,65 +1270,57 @@ public class BarcodeDecoder {
 	}
 	
 	//---------------------------------------------------------------------------------------
-	/** Prints out the content of the given array. 
-	 *  
-	 *  @param array The three dim. array that should be printed. 
-	 *         (e.g. the array containing information about the occurrence of digits.)
-	 *  @param level index of the third dimension that sould be printed.
+	// METHODS FOR THE CONVERSION OF A PIXEL LINE TO ALTERNATING BLACK&WHITE FIELDS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Converts the RGB values along a path into greyscale values. (see Luminance)
+	 * 
+	 * 	@param line represents a two dim. array, that contains the RGB values along 
+	 *         the a ceratin path.
 	 *  
-	 *  @see #addNumberToPossibleNumbers(int[], int[][][])
-	 *  @see #sortDigits(int[][][])
+	 *  @param grey_line the array that should be filled, at least as long as the path.
 	 *  
-	 *  @author Robert Adelmann 
+	 *  @return the given array, containing the greyscale values (0..255) along that path.
 	 */
 	//---------------------------------------------------------------------------------------
-	private static void printArray(int[][][] array, int level) {
-
-		for (int i = 0; i < array.length; i++) {
-			System.out.print(i + " :   ");
-			for (int j = 0; j < array[0].length; j++) {
-				if (array[i][j][level] == -1) System.out.print("x  ");
-				else System.out.print(array[i][j][level] + "  ");
-			}
-			System.out.println("");
+	private static int[] createGreyLine(int[][] line, int[] grey_line) {
+		int w = line.length;
+		for (int x = 0; x < w; x++) {
+			grey_line[x] = Luminance.getGrey(line[x][0], line[x][1], line[x][2]);
 		}
+		return grey_line;
 	}
 
 	//---------------------------------------------------------------------------------------
-	// METHODS FOR THE CONVERSION OF A PIXEL LINE TO ALTERNATING BLACK&WHITE FIELDS
-	//---------------------------------------------------------------------------------------
-
-	//---------------------------------------------------------------------------------------
-	/** Converts the given path into one containing only balck&white pixels.
+	/** Converts the given greyscale values into black&white pixels, using an adaptive
+	 *  threshold.
 	 * 
-	 * 	@param line represents a two dim. array, that contains the RGB values along 
-	 *         the a ceratin path.
-	 * 
-	 *  Index 1 has a size that correlates to the length of the path and 
-	 *  specifies the position along the path.<br> 
-	 *  Index 2 has size three and specifies the color as RGB values. <br>
+	 * 	@param grey_line the greyscale values along a path.
+	 *  @param w the length of the path.
+	 *  @param bw_line the array that should be filled, at least as long as the path.
+	 *  @param profile contains the width of the threshold window and the threshold bias.
 	 *  
-	 *  @return a one dim. array containing the black and white pixels along that path.
+	 *  @return the given bw_line array containing the black and white pixels along that path.
 	 *          (0 corresponds to a black pixel, 255 to a white one) 
-     */
+	 */
 	//---------------------------------------------------------------------------------------
-	private static int[] transformPathToBW(int[][] line) {
+	private static int[] transformGreyLineToBW(int[] grey_line, int w, int[] bw_line, DecoderProfile profile) {
 
-		int w = line.length;
-		int bw_line[] = new int[w];
 		bw_line[0] = 255;
+		bw_line[w - 1] = 0;
 
-		// create greyscale values:
-		int grey_line[] = new int[w];
 		int average_illumination = 0;
 		for (int x = 0; x < w; x++) {
-			grey_line[x] = (line[x][0] + line[x][1] + line[x][2]) / 3;
 			average_illumination = average_illumination + grey_line[x];
 		}
 		average_illumination = average_illumination / w;
 
 		// perform the binarization:
-		int range = w / 20;
+		int range = w / profile.getBinarizationWindowDivisor();
+		if (range < 1) range = 1;
+		if (range > w - 1) range = w - 1;
+		int threshold_bias = profile.getThresholdBias();
 
 		// temp values:
 		int moving_sum;
@@ -610,7 +1351,7 @@ public class BarcodeDecoder {
 
 			// decide if the current pixel should be black or white: 
 			comparison_value = (3 * moving_average + average_illumination) >>> 2;
-			if ((current_value < comparison_value - 3)) bw_line[i] = 0;
+			if ((current_value < comparison_value - threshold_bias)) bw_line[i] = 0;
 			else bw_line[i] = 255;
 		}
 
@@ -635,21 +1376,22 @@ public class BarcodeDecoder {
 	 *  current fields color (b = 0) and the current fields
 	 *  length (b = 1).
 	 *  
+	 *  The given temp_fields array is used as buffer, it must have at least 
+	 *  as many entries as there are pixels.
+	 *  
 	 *  <br><br>
 	 *  <b>Author</b> Robert Adelmann <br> 
 	 *  <b>Version</b> 1.0 <br> */
 	//---------------------------------------------------------------------------------------
-	private static int[][] extractFieldInformation(int[] string) {
-
-		int[][] temp_fields = new int[string.length][2];
+	private static int[][] extractFieldInformation(int[] string, int length, int[][] temp_fields) {
 
-		if (string.length == 0) return new int[0][1];
+		if (length == 0) return new int[0][1];
 
 		int field_counter = 0;
 		int last_value = string[0];
 		int last_fields = 1;
-		for (int i = 1; i < string.length; i++) {
-			if ((string[i] == last_value) && (i < string.length - 1)) {
+		for (int i = 1; i < length; i++) {
+			if ((string[i] == last_value) && (i < length - 1)) {
 				last_fields++;
 			} else {
 
@@ -672,4 +1414,346 @@ public class BarcodeDecoder {
 		return fields;
 	}
 
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the black and white fields along a path like extractFieldInformation(), 
+	 *  but with field lengths measured in 1/SUBPIXEL_SCALE pixels.
+	 *  <p>
+	 *  The black&white pixels only determine the sequence of the fields. The position
+	 *  of each edge is then taken from the greyscale gradient: the strongest gradient 
+	 *  with the right direction next to the black&white transition is searched, and 
+	 *  its position is refined by fitting a parabola through it and its two neighbours.
+	 *  
+	 *  @param grey_line the greyscale values along the path.
+	 *  @param string the black and white pixels along the path.
+	 *  @param w the length of the path.
+	 *  @param temp_fields a buffer with at least w + 1 entries.
+	 *  
+	 *  @return the fields as int[field nr.][0 = color, 1 = length in 1/SUBPIXEL_SCALE pixels]
+	 */
+	//---------------------------------------------------------------------------------------
+	private static int[][] extractEdgeFieldInformation(int[] grey_line, int[] string, int w, int[][] temp_fields) {
+
+		if (w < 4) return new int[0][2];
+
+		int field_counter = 0;
+		int last_edge = 0;
+		int edge, k, best_k, gradient, best_gradient, direction;
+		int left, right, denominator;
+
+		for (int i = 1; i < w; i++) {
+			if (string[i] == string[i - 1]) continue;
+
+			// +1 for a transition from black to white, -1 for white to black:
+			direction = (string[i] > string[i - 1]) ? 1 : -1;
+
+			// the binarization compares the average of two neighbouring pixels, so the
+			// edge is searched among the gradients between the pixels i-2 and i+1:
+			best_k = i - 1;
+			best_gradient = Integer.MIN_VALUE;
+			for (k = i - 2; k <= i; k++) {
+				if ((k < 0) || (k > w - 2)) continue;
+				gradient = direction * (grey_line[k + 1] - grey_line[k]);
+				if (gradient > best_gradient) {
+					best_gradient = gradient;
+					best_k = k;
+				}
+			}
+
+			// the gradient between the pixels k and k+1 belongs to the position k + 0.5:
+			edge = best_k * SUBPIXEL_SCALE + (SUBPIXEL_SCALE >> 1);
+
+			// refine the position with the vertex of the parabola through the neighbouring gradients:
+			if ((best_k > 0) && (best_k < w - 2)) {
+				left = direction * (grey_line[best_k] - grey_line[best_k - 1]);
+				right = direction * (grey_line[best_k + 2] - grey_line[best_k + 1]);
+				denominator = left - 2 * best_gradient + right;
+				if (denominator < 0) {
+					int offset = ((left - right) * SUBPIXEL_SCALE) / (2 * denominator);
+					if (offset > SUBPIXEL_SCALE >> 1) offset = SUBPIXEL_SCALE >> 1;
+					if (offset < -(SUBPIXEL_SCALE >> 1)) offset = -(SUBPIXEL_SCALE >> 1);
+					edge = edge + offset;
+				}
+			}
+
+			// the edges must stay in order:
+			if (edge <= last_edge) edge = last_edge + 1;
+
+			// create new field entry:
+			temp_fields[field_counter][0] = string[i - 1];
+			temp_fields[field_counter][1] = edge - last_edge;
+			field_counter++;
+			last_edge = edge;
+		}
+
+		// add the last field:
+		if (w * SUBPIXEL_SCALE > last_edge) {
+			temp_fields[field_counter][0] = string[w - 1];
+			temp_fields[field_counter][1] = w * SUBPIXEL_SCALE - last_edge;
+			field_counter++;
+		}
+
+		int[][] fields = new int[field_counter][2];
+		for (int i = 0; i < field_counter; i++) {
+			fields[i][0] = temp_fields[i][0];
+			fields[i][1] = temp_fields[i][1];
+		}
+
+		return fields;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// HELPER CLASS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** The buffers that are needed to process one scanline. They are allocated once per 
+	 *  recognition run and reused for all of its scanlines, so they are never shared 
+	 *  between threads.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static class Scratch {
+
+		int[] grey_line = new int[0];     // the greyscale values along the scanline
+		int[] bw_line = new int[0];       // the black and white pixels along the scanline
+		int[][] temp_fields = new int[0][];  // the fields before they are copied into an array of the right size
+		Barcode_EAN13Half[] halves;          // the halves recognized along the last scanline, or null
+		int field_count;                     // the number of fields along the last scanline
+		boolean reused;                      // the result of the last scanline has been reused
+
+		final long[] pattern = new long[3];  // the module pattern of the last scanline
+
+		//---------------------------------------------------------------------------------------
+		/** Makes sure that the buffers can hold a scanline with the given number of pixels. */
+		//---------------------------------------------------------------------------------------
+		void ensureCapacity(int w) {
+			if (grey_line.length >= w) return;
+			grey_line = new int[w];
+			bw_line = new int[w];
+			temp_fields = new int[w + 1][2];
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** The module patterns of recent valid scanlines of one image, with their codes. (a 
+	 *  ring buffer) The memory is created once per recognition run, and shared by all 
+	 *  subtasks of an image in a batch recognition, so its methods are synchronized.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static class PatternMemory {
+
+		private final long[][] patterns = new long[REMEMBERED_PATTERNS][3];
+		private final Barcode_EAN13[] codes = new Barcode_EAN13[REMEMBERED_PATTERNS];
+		private int next = 0;
+
+		//---------------------------------------------------------------------------------------
+		/** @return the code of the remembered pattern that is equal to the given one, or null. */
+		//---------------------------------------------------------------------------------------
+		synchronized Barcode_EAN13 find(long[] pattern) {
+			for (int i = 0; i < REMEMBERED_PATTERNS; i++) {
+				if ((codes[i] != null) && (patterns[i][0] == pattern[0]) 
+					&& (patterns[i][1] == pattern[1]) && (patterns[i][2] == pattern[2])) return codes[i];
+			}
+			return null;
+		}
+
+		//---------------------------------------------------------------------------------------
+		/** Remembers the given pattern together with its valid code, replacing the oldest
+		 *  remembered pattern. */
+		//---------------------------------------------------------------------------------------
+		synchronized void remember(long[] pattern, Barcode_EAN13 code) {
+			patterns[next][0] = pattern[0];
+			patterns[next][1] = pattern[1];
+			patterns[next][2] = pattern[2];
+			codes[next] = code;
+			next = (next + 1) % REMEMBERED_PATTERNS;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes all images of a batch, and stores their results by the index of the image. */
+	//---------------------------------------------------------------------------------------
+	private class BatchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends Device> devices;
+		private final DecoderProfile profile;
+		private final DecodeResult[] results;
+
+		BatchTask(List<? extends Device> devices, DecoderProfile profile, DecodeResult[] results) {
+			this.devices = devices;
+			this.profile = profile;
+			this.results = results;
+		}
+
+		protected void compute() {
+			ImageTask[] tasks = new ImageTask[results.length];
+			for (int i = 0; i < tasks.length; i++) tasks[i] = new ImageTask(devices.get(i), profile, results, i);
+			ForkJoinTask.invokeAll(tasks);
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes one image of a batch. The scanlines are decoded by ScanlineTasks, the 
+	 *  votes are resolved when all of them have been joined.
+	 */
+	//---------------------------------------------------------------------------------------
+	private class ImageTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Device device;
+		private final DecoderProfile profile;
+		private final DecodeResult[] results;
+		private final int index;
+
+		ImageTask(Device device, DecoderProfile profile, DecodeResult[] results, int index) {
+			this.device = device;
+			this.profile = profile;
+			this.results = results;
+			this.index = index;
+		}
+
+		protected void compute() {
+			DecodeEvent event = new DecodeEvent();
+			event.begin();
+			results[index] = decodeImage();
+			event.report(device, results[index]);
+		}
+
+		private DecodeResult decodeImage() {
+			long decode_start = System.nanoTime();
+			int w = device.getImageWidth();
+			int[][] scanlines = profile.getScanPlan().getScanlines(w, device.getImageHeight());
+
+			// skip images that surely contain no barcode, and decode the scanlines across 
+			// the bars first:
+			int[][] oriented = isCompleteImage(device) ? locateBarcode(device) : new int[0][];
+			if (oriented == null) return createRejectedResult(new int[scanlines.length][], new int[scanlines.length][], decode_start);
+			int amount_oriented = oriented.length;
+			scanlines = concat(oriented, scanlines);
+			int[][] numbers = new int[scanlines.length][];
+			int[][] scanline_positions = new int[scanlines.length][];
+			Barcode_EAN13Half[][] halves = new Barcode_EAN13Half[scanlines.length][];
+			boolean[] reused = new boolean[scanlines.length];
+			PatternMemory patterns = new PatternMemory();
+
+			// a session converts its rows on demand, so it can't be used by several threads:
+			DecodeSession session = (device instanceof DecodeSession) ? (DecodeSession) device : null;
+			int scanlines_per_task = (session != null) ? scanlines.length : SCANLINES_PER_TASK;
+
+			DigitHistogram histogram = new ScanlineTask(device, session, profile, patterns, scanlines, numbers, 
+				scanline_positions, halves, reused, 0, amount_oriented, scanlines_per_task).compute();
+
+			// the scanlines of the plan are only needed if those across the bars have failed:
+			if ((amount_oriented > 0) && containsValidCode(numbers, amount_oriented)) {
+				numbers = Arrays.copyOf(numbers, amount_oriented);
+				scanline_positions = Arrays.copyOf(scanline_positions, amount_oriented);
+				halves = Arrays.copyOf(halves, amount_oriented);
+				reused = Arrays.copyOf(reused, amount_oriented);
+			} else {
+				histogram.merge(new ScanlineTask(device, session, profile, patterns, scanlines, numbers, 
+					scanline_positions, halves, reused, amount_oriented, scanlines.length, scanlines_per_task).compute());
+			}
+			return resolveBarcode(histogram, numbers, scanline_positions, halves, reused, profile, decode_start);
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes a range of the scanlines of an image. The range is split in halves until
+	 *  it contains at most scanlines_per_task scanlines. The recognized digits are stored 
+	 *  by the index of the scanline, the votes are returned in a histogram. All tasks of 
+	 *  an image share its PatternMemory.
+	 */
+	//---------------------------------------------------------------------------------------
+	private class ScanlineTask extends RecursiveTask<DigitHistogram> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Device device;
+		private final DecodeSession session;
+		private final DecoderProfile profile;
+		private final PatternMemory patterns;
+		private final int[][] scanlines;
+		private final int[][] numbers;
+		private final int[][] scanline_positions;
+		private final Barcode_EAN13Half[][] halves;
+		private final boolean[] reused;
+		private final int from;
+		private final int to;
+		private final int scanlines_per_task;
+
+		ScanlineTask(Device device, DecodeSession session, DecoderProfile profile, PatternMemory patterns, int[][] scanlines, 
+				int[][] numbers, int[][] scanline_positions, Barcode_EAN13Half[][] halves, boolean[] reused, int from, int to, 
+				int scanlines_per_task) {
+			this.device = device;
+			this.session = session;
+			this.profile = profile;
+			this.patterns = patterns;
+			this.scanlines = scanlines;
+			this.numbers = numbers;
+			this.scanline_positions = scanline_positions;
+			this.halves = halves;
+			this.reused = reused;
+			this.from = from;
+			this.to = to;
+			this.scanlines_per_task = scanlines_per_task;
+		}
+
+		protected DigitHistogram compute() {
+
+			// split the range, and decode the second half while the first one may be stolen:
+			if (to - from > scanlines_per_task) {
+				int middle = (from + to) >>> 1;
+				ScanlineTask first = new ScanlineTask(device, session, profile, patterns, scanlines, numbers, 
+					scanline_positions, halves, reused, from, middle, scanlines_per_task);
+				ScanlineTask second = new ScanlineTask(device, session, profile, patterns, scanlines, numbers, 
+					scanline_positions, halves, reused, middle, to, scanlines_per_task);
+				first.fork();
+				DigitHistogram histogram = second.compute();
+				histogram.merge(first.join());
+				return histogram;
+			}
+
+			Scratch scratch = new Scratch();
+			DigitHistogram histogram = new DigitHistogram();
+			for (int i = from; i < to; i++) {
+				Barcode_EAN13 ean13_code = decodeScanline(device, session, scanlines[i], i, profile, scratch, patterns);
+				if (ean13_code == null) continue;
+				numbers[i] = ean13_code.getNumbers();
+				scanline_positions[i] = scanlines[i].clone();
+				halves[i] = scratch.halves;
+				reused[i] = scratch.reused;
+				histogram.add(numbers[i], ean13_code.isValid(), i);
+			}
+			return histogram;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** A digit combination considered by detectValidBarcode(). ranks[i] is the index of 
+	 *  the digit selected at code position i in the ranking of the histogram.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static class Candidate implements Comparable<Candidate> {
+
+		final int[] ranks;          // the selected digit at each position
+		final int cost;             // the votes lost compared to the most likely code
+		final int last_position;    // the position that has been changed last
+		final int sequence;         // keeps the order of candidates with equal costs stable
+
+		Candidate(int[] ranks, int cost, int last_position, int sequence) {
+			this.ranks = ranks;
+			this.cost = cost;
+			this.last_position = last_position;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(Candidate other) {
+			if (cost != other.cost) return (cost < other.cost) ? -1 : 1;
+			return (sequence < other.sequence) ? -1 : ((sequence == other.sequence) ? 0 : 1);
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  The estimated orientation and position of a barcode in an image, as returned by the
+ *  OrientationEstimator.
+ *  <p>
+ *  The angle is the direction across the bars, i.e. the direction in which the code
+ *  has to be scanned, measured from the x axis towards the y axis (0..PI). It is
+ *  ambiguous by PI: the estimate doesn't tell at which end the code starts.
+ *
+ *  @see OrientationEstimator#estimate(Device)
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class BarcodeOrientation {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private final double angle;          // the scan direction in radians (0..PI)
+	private final float center_x;        // the centre of the barcode
+	private final float center_y;
+	private final float width;           // the extent of the barcode across the bars
+	private final float height;          // the extent of the barcode along the bars
+	private final float coherence;       // how well the gradients agree with the angle (0..1)
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	public BarcodeOrientation(double angle, float center_x, float center_y, float width, float height, float coherence) {
+		this.angle = angle;
+		this.center_x = center_x;
+		this.center_y = center_y;
+		this.width = width;
+		this.height = height;
+		this.coherence = coherence;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Places scanlines perpendicular to the bars, spread over the middle part of the
+	 *  bars, the ones closest to the centre first. Each scanline crosses the whole image
+	 *  and is returned twice, once in each direction, because the start of the code is
+	 *  unknown.
+	 *
+	 *  @param amount the number of scanline positions.
+	 *  @param w the width of the image.
+	 *  @param h the height of the image.
+	 *
+	 *  @return 2 * amount scanlines, each containing x1, y1, x2 and y2.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int[][] getScanlines(int amount, int w, int h) {
+		if (amount <= 0) throw new IllegalArgumentException("amount must be positive: " + amount);
+		double dx = Math.cos(angle);
+		double dy = Math.sin(angle);
+
+		// the offsets along the bars, ordered by their distance from the centre:
+		// (the ends of the bars are left out, the estimated height is rather too large)
+		double[] offsets = new double[amount];
+		for (int i = 0; i < amount; i++) {
+			int position = (amount >> 1) + (((i & 1) == 0) ? (i >> 1) : -((i + 1) >> 1));
+			offsets[i] = ((position + 0.5) / amount - 0.5) * height * 0.7;
+		}
+
+		int[][] lines = new int[2 * amount][];
+		for (int i = 0; i < amount; i++) {
+			double px = center_x - dy * offsets[i];
+			double py = center_y + dx * offsets[i];
+			lines[2 * i] = clipLine(px, py, dx, dy, w, h);
+			lines[2 * i + 1] = new int[] { lines[2 * i][2], lines[2 * i][3], lines[2 * i][0], lines[2 * i][1] };
+		}
+		return lines;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the part of the line through (px, py) in direction (dx, dy) that lies in
+	 *  the image, or a line of length 0 at the nearest pixel if it misses the image. */
+	//---------------------------------------------------------------------------------------
+	private static int[] clipLine(double px, double py, double dx, double dy, int w, int h) {
+		double from = Double.NEGATIVE_INFINITY;
+		double to = Double.POSITIVE_INFINITY;
+		double[] start = { px, py };
+		double[] direction = { dx, dy };
+		double[] max = { w - 1, h - 1 };
+		for (int axis = 0; axis < 2; axis++) {
+			if (Math.abs(direction[axis]) < 1e-9) {
+				if ((start[axis] < 0) || (start[axis] > max[axis])) return clampPoint(px, py, w, h);
+				continue;
+			}
+			double t1 = (0 - start[axis]) / direction[axis];
+			double t2 = (max[axis] - start[axis]) / direction[axis];
+			from = Math.max(from, Math.min(t1, t2));
+			to = Math.min(to, Math.max(t1, t2));
+		}
+		if (from > to) return clampPoint(px, py, w, h);
+		return new int[] { clamp(px + from * dx, w), clamp(py + from * dy, h), clamp(px + to * dx, w), clamp(py + to * dy, h) };
+	}
+
+	private static int[] clampPoint(double px, double py, int w, int h) {
+		int x = clamp(px, w);
+		int y = clamp(py, h);
+		return new int[] { x, y, x, y };
+	}
+
+	private static int clamp(double value, int size) {
+		return Math.min(size - 1, Math.max(0, (int) Math.round(value)));
+	}
+
+	public String toString() {
+		return "angle " + Math.round(Math.toDegrees(angle)) + ", centre " + Math.round(center_x) + "/" + Math.round(center_y)
+			+ ", size " + Math.round(width) + "x" + Math.round(height) + ", coherence " + coherence;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	/** @return the direction across the bars in radians, from the x axis towards the y axis (0..PI). */
+	public double getAngle() {
+		return angle;
+	}
+
+	public float getCenterX() {
+		return center_x;
+	}
+
+	public float getCenterY() {
+		return center_y;
+	}
+
+	/** @return the extent of the barcode across the bars, in pixels. */
+	public float getWidth() {
+		return width;
+	}
+
+	/** @return the extent of the barcode along the bars, in pixels. */
+	public float getHeight() {
+		return height;
+	}
+
+	/** @return how well the gradients of the barcode agree with the angle, from 0 (not at all) to 1. */
+	public float getCoherence() {
+		return coherence;
+	}
+
+}
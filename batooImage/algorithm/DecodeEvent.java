@@ -0,0 +1,81 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.algorithm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  A Java Flight Recorder event for a recognition run of the BarcodeDecoder. Only runs 
+ *  that take longer than the threshold are recorded. (10 ms by default, see 
+ *  build/batoo.jfc)
+ *  
+ *  @see BarcodeDecoder#decode(Device, DecoderProfile)
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+@Name("batooImage.Decode")
+@Label("Barcode Decode")
+@Category("Batoo Image")
+@Description("A recognition run of the barcode decoder")
+@Threshold("10 ms")
+class DecodeEvent extends Event {
+
+	@Label("Image Width")
+	int imageWidth;
+
+	@Label("Image Height")
+	int imageHeight;
+
+	@Label("Scanlines")
+	@Description("The number of scanlines of the run")
+	int scanlines;
+
+	@Label("Agreeing Scanlines")
+	@Description("The number of scanlines that agree with the returned code")
+	int agreeingScanlines;
+
+	@Label("Valid")
+	boolean valid;
+
+	@Label("Code")
+	@Description("The returned code, with '?' for digits that haven't been recognized")
+	String code;
+
+	//---------------------------------------------------------------------------------------
+	/** Ends the event and commits it with the given result, if it is recorded. */
+	//---------------------------------------------------------------------------------------
+	void report(Device device, DecodeResult result) {
+		end();
+		if (!shouldCommit()) return;
+		imageWidth = device.getImageWidth();
+		imageHeight = device.getImageHeight();
+		scanlines = result.getScanlines();
+		agreeingScanlines = result.getAgreeingScanlines();
+		valid = result.isValid();
+		code = result.getBarcode().toString();
+		commit();
+	}
+
+}
@@ -0,0 +1,88 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This interface is notified by the BarcodeDecoder about the progress of a recognition run.
+ *  It receives the time spent in the different stages of the recognition, the outcome
+ *  of every scanline and the total time of every recognition run.
+ *  <p>
+ *  Implementations are called from the thread that performs the recognition, so they
+ *  should return quickly. If a decoder has no listener, it skips all time measurements.
+ *  
+ *  @see BarcodeDecoder#BarcodeDecoder(DecodeListener, boolean)
+ *  @see DecodeStatistics
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public interface DecodeListener {
+
+	//---------------------------------------------------------------------------------------
+	// CONSTANTS
+	//---------------------------------------------------------------------------------------
+
+	/** Extraction of the greyscale values along a scanline. (Device.getPath()) */
+	public static final int STAGE_PATH_SAMPLING = 0;
+	/** Conversion of the greyscale values into black and white pixels. */
+	public static final int STAGE_BINARIZATION = 1;
+	/** Conversion of the black and white pixels into alternating fields. */
+	public static final int STAGE_FIELD_EXTRACTION = 2;
+	/** Matching of the fields against the EAN13 code tables. */
+	public static final int STAGE_DIGIT_MATCHING = 3;
+	/** Combination of the results of all scanlines into one barcode. */
+	public static final int STAGE_VOTE_RESOLUTION = 4;
+
+	/** The number of stages reported through stageCompleted(). */
+	public static final int STAGE_COUNT = 5;
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Is called every time one stage of the recognition has been performed.
+	 *  
+	 *  @param stage one of the STAGE_ constants.
+	 *  @param nanos the time spent in that stage, in nanoseconds.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void stageCompleted(int stage, long nanos);
+
+	//---------------------------------------------------------------------------------------
+	/** Is called after the recognition along one scanline has been performed.
+	 *  
+	 *  @param recognized true, if at least one digit could be recognized along the scanline.
+	 *  @param valid true, if a complete code with a correct checksum has been recognized.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void scanlineCompleted(boolean recognized, boolean valid);
+
+	//---------------------------------------------------------------------------------------
+	/** Is called at the end of every recognition run.
+	 *  
+	 *  @param nanos the total time of the recognition run, in nanoseconds.
+	 *  @param valid true, if the returned barcode is valid.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void decodeCompleted(long nanos, boolean valid);
+
+}
@@ -0,0 +1,186 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class represents the result of a recognition run. Besides the recognized barcode 
+ *  it contains the information that has been collected to select it, so that the caller
+ *  can judge how reliable the result is without running the recognition again.
+ *  <p>
+ *  The votes are taken from the DigitHistogram of the BarcodeDecoder: a scanline with a 
+ *  correct checksum adds 100 votes to each of its digits, any other scanline adds one 
+ *  vote to each digit it could recognize.
+ *  <p>
+ *  Scanlines whose bars and spaces equal those of an earlier valid scanline reuse its 
+ *  code without recognizing it again. They haven't confirmed the code on their own, so 
+ *  they aren't among the agreeing scanlines, but are returned by getReusedHits().
+ *  
+ *  @see BarcodeDecoder#decode(Device)
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class DecodeResult {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private Barcode barcode;          // the recognized barcode
+	private int[] votes;              // votes for the selected digit at each code position
+	private int[] vote_margins;       // difference to the votes of the runner up digit
+	private int scanlines;            // the number of scanlines that have been tried
+	private int[][] hits;             // x1, y1, x2, y2 of the scanlines agreeing with the barcode
+	private int[][] reused_hits;      // x1, y1, x2, y2 of the agreeing scanlines that have reused a code
+	private long elapsed_nanos;       // the time the recognition took
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Creates a result without scanlines that have reused the code of another scanline.
+	 *  
+	 *  @see #DecodeResult(Barcode, int[], int[], int, int[][], int[][], long)
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeResult(Barcode barcode, int[] votes, int[] vote_margins, int scanlines, int[][] hits, long elapsed_nanos) {
+		this(barcode, votes, vote_margins, scanlines, hits, new int[0][], elapsed_nanos);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @param barcode the recognized barcode.
+	 *  @param votes the votes for the selected digit at each of the 13 code positions.
+	 *  @param vote_margins the difference between the votes of the selected digit and 
+	 *         the votes of the best other digit at each of the 13 code positions.
+	 *  @param scanlines the number of scanlines that have been tried.
+	 *  @param hits the positions (x1, y1, x2, y2) of all scanlines that have recognized all
+	 *         digits of the barcode,
+	 *         without those that have reused the code of another scanline.
+	 *  @param reused_hits the positions (x1, y1, x2, y2) of the scanlines that agree with the 
+	 *         barcode because they have reused the code of another scanline.
+	 *  @param elapsed_nanos the duration of the recognition run in nanoseconds.
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeResult(Barcode barcode, int[] votes, int[] vote_margins, int scanlines, int[][] hits, 
+			int[][] reused_hits, long elapsed_nanos) {
+		this.barcode = barcode;
+		this.votes = votes;
+		this.vote_margins = vote_margins;
+		this.scanlines = scanlines;
+		this.hits = hits;
+		this.reused_hits = reused_hits;
+		this.elapsed_nanos = elapsed_nanos;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the smallest vote margin of all code positions. A value of 0 means that 
+	 *  at least one digit has been either not recognized at all or is tied with 
+	 *  another digit. A negative value means that at least one digit has been chosen 
+	 *  against the majority of the votes to obtain a correct checksum.
+	 *  
+	 *  @return the smallest difference between the selected and the best other digit.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int getMinVoteMargin() {
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < vote_margins.length; i++) {
+			if (vote_margins[i] < min) min = vote_margins[i];
+		}
+		return min;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns true if the barcode is valid and has been confirmed by the given 
+	 *  number of scanlines. (scanlines that have reused a code don't count)
+	 *  
+	 *  @param min_agreeing_scanlines the minimal number of agreeing scanlines.
+	 */
+	//---------------------------------------------------------------------------------------
+	public boolean isConfident(int min_agreeing_scanlines) {
+		return barcode.isValid() && (hits.length >= min_agreeing_scanlines);
+	}
+
+	public String toString() {
+		return barcode + " (valid: " + barcode.isValid() + ", agreeing scanlines: " + hits.length + "/" + scanlines
+			+ ((reused_hits.length > 0) ? " (+" + reused_hits.length + " reused)" : "") + ", min. vote margin: " + getMinVoteMargin() + ", time: " + (elapsed_nanos / 1000) + "us)";
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public Barcode getBarcode() {
+		return barcode;
+	}
+
+	public boolean isValid() {
+		return barcode.isValid();
+	}
+
+	public int getVotes(int index) {
+		return votes[index];
+	}
+
+	public int getVoteMargin(int index) {
+		return vote_margins[index];
+	}
+
+	public int[] getVoteMargins() {
+		return vote_margins;
+	}
+
+	public int getScanlines() {
+		return scanlines;
+	}
+
+	public int getAgreeingScanlines() {
+		return hits.length;
+	}
+
+	public int getReusedScanlines() {
+		return reused_hits.length;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the positions of the scanlines that have recognized all digits of the 
+	 *          barcode. The second dimension contains x1, y1, x2 and y2 of each scanline. */
+	//---------------------------------------------------------------------------------------
+	public int[][] getHits() {
+		return hits;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the positions of the scanlines that agree with the recognized barcode because 
+	 *          they have reused the code of another scanline. (x1, y1, x2 and y2 of each) */
+	//---------------------------------------------------------------------------------------
+	public int[][] getReusedHits() {
+		return reused_hits;
+	}
+
+	public long getElapsedNanos() {
+		return elapsed_nanos;
+	}
+
+}
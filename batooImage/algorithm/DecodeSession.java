@@ -0,0 +1,240 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+import java.util.Arrays;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class caches the greyscale values of an image while it is being decoded, so 
+ *  that every pixel is converted only once, no matter how many scanlines, profiles 
+ *  or presence checks touch it.
+ *  <p>
+ *  The greyscale plane is built lazily: the first path that touches a row converts the
+ *  whole row of the underlying device into a buffer of its own, later paths read the 
+ *  cached values. Only the touched rows are allocated, so decoding a few scanlines of
+ *  a large image doesn't pay for the whole plane. The 
+ *  BarcodeDecoder recognizes a session and takes the greyscale values directly, 
+ *  without the RGB arrays of Device.getPath(). The greyscale values are computed with
+ *  the Luminance class, like in the BarcodeDecoder, so the results don't change.
+ *  <p>
+ *  Paths are sampled from the nearest pixel. If the device is an ImageDevice with
+ *  bilinear sampling, the interpolated paths of the device are converted instead, so a
+ *  session gives the same results as the device itself, but without the cache. The 
+ *  underlying device should contain the complete image, so sessions can't be used with
+ *  a ProgressiveDevice that is still receiving rows.
+ *  <p>
+ *  A session is used by one thread at a time. It can be reused for another image 
+ *  with reset(), which keeps the row buffers for the rows of the next image.
+ *  
+ *  @see DecodeSessionPool
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class DecodeSession implements Device {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+	private Device device;                // the device containing the image
+	private int image_width;
+	private int image_height;
+
+	private byte[][] rows = new byte[0][];        // the greyscale values of each row, or null
+	private byte[][] spare_rows = new byte[0][];  // the row buffers of earlier images, for reuse
+	private int amount_spare_rows = 0;
+
+	private int built_rows = 0;           // the number of rows built for the current image
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** @param device the device containing the image. */
+	//---------------------------------------------------------------------------------------
+	public DecodeSession(Device device) {
+		reset(device);
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Prepares this session for another image. The row buffers of the last image are
+	 *  kept, and reused for the rows of the new image if they are long enough.
+	 *  
+	 *  @param device the device containing the image, or null to release the last image.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void reset(Device device) {
+		this.device = device;
+		this.image_width = (device != null) ? device.getImageWidth() : 0;
+		this.image_height = (device != null) ? device.getImageHeight() : 0;
+		this.built_rows = 0;
+
+		// keep the rows of the last image for reuse:
+		for (int y = 0; y < rows.length; y++) {
+			if (rows[y] == null) continue;
+			if (amount_spare_rows == spare_rows.length) spare_rows = Arrays.copyOf(spare_rows, Math.max(16, 2 * amount_spare_rows));
+			spare_rows[amount_spare_rows++] = rows[y];
+			rows[y] = null;
+		}
+		if (rows.length < image_height) rows = new byte[image_height][];
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Performs a recognition run on this session with the default decoder. */
+	//---------------------------------------------------------------------------------------
+	public Barcode recognize() {
+		return BarcodeDecoder.DEFAULT.recognizeBarcode(this);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the number of pixels along the given path, as used by getPath(). */
+	//---------------------------------------------------------------------------------------
+	public int getPathLength(int x1, int y1, int x2, int y2) {
+		int dx = x2 - x1;
+		int dy = y2 - y1;
+		return (int) Math.sqrt((double) dx * dx + (double) dy * dy);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Extracts the greyscale values along a path.
+	 *  
+	 *  @param x1 x-Pos of path starting point
+	 *  @param y1 y-Pos of path starting point
+	 *  @param x2 x-Pos of path end point
+	 *  @param y2 y-Pos of path end point
+	 *  @param grey_line the array that receives the values, at least getPathLength() long.
+	 *  
+	 *  @return the number of values along the path.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int getGreyPath(int x1, int y1, int x2, int y2, int[] grey_line) {
+		int distance = getPathLength(x1, y1, x2, y2);
+		if (distance == 0) return 0;
+
+		// interpolated values can't be taken from the cached rows:
+		if ((device instanceof ImageDevice) && ((ImageDevice) device).isBilinearSampling()) {
+			int[][] path = device.getPath(x1, y1, x2, y2, image_width);
+			for (int i = 0; i < distance; i++) grey_line[i] = Luminance.getGrey(path[i][0], path[i][1], path[i][2]);
+			return distance;
+		}
+
+		// the current position and the step width in fixed point values:
+		long px = ((long) x1) << 16;
+		long py = ((long) y1) << 16;
+		long step_x = (((long) (x2 - x1)) << 16) / distance;
+		long step_y = (((long) (y2 - y1)) << 16) / distance;
+
+		byte[] row = null;
+		int last_row = -1;
+		for (int i = 0; i < distance; i++) {
+			int y = (int) (py >> 16);
+			if (y != last_row) {
+				row = buildRow(y);
+				last_row = y;
+			}
+			grey_line[i] = row[(int) (px >> 16)] & 0xFF;
+			px = px + step_x;
+			py = py + step_y;
+		}
+		return distance;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Extracts the greyscale values along a path, as RGB values with three equal 
+	 *  components, for the users of the Device interface.
+	 *  
+	 *  @see Device#getPath(int, int, int, int, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public int[][] getPath(int x1, int y1, int x2, int y2, int image_w) {
+		int[] grey_line = new int[getPathLength(x1, y1, x2, y2)];
+		int distance = getGreyPath(x1, y1, x2, y2, grey_line);
+		int[][] path = new int[distance][3];
+		for (int i = 0; i < distance; i++) {
+			path[i][0] = grey_line[i];
+			path[i][1] = grey_line[i];
+			path[i][2] = grey_line[i];
+		}
+		return path;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Converts a row of the underlying device into greyscale values, if it hasn't been
+	 *  converted for the current image yet.
+	 *  
+	 *  @return the greyscale values of the row.
+	 */
+	//---------------------------------------------------------------------------------------
+	private byte[] buildRow(int y) {
+		if (rows[y] != null) return rows[y];
+
+		byte[] grey_row = createRow();
+		if (device instanceof ImageDevice) {
+			((ImageDevice) device).getGreyRow(y, grey_row, 0);
+		} else {
+			int[][] row = device.getPath(0, y, image_width, y, image_width);
+			for (int x = 0; x < image_width; x++) {
+				grey_row[x] = (byte) Luminance.getGrey(row[x][0], row[x][1], row[x][2]);
+			}
+		}
+		rows[y] = grey_row;
+		built_rows++;
+		return grey_row;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns a buffer for a row of the current image, taken from the spare rows if one 
+	 *  of them is long enough. (shorter spare rows are dropped) */
+	//---------------------------------------------------------------------------------------
+	private byte[] createRow() {
+		while (amount_spare_rows > 0) {
+			byte[] row = spare_rows[--amount_spare_rows];
+			spare_rows[amount_spare_rows] = null;
+			if (row.length >= image_width) return row;
+		}
+		return new byte[image_width];
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public Device getDevice() {
+		return device;
+	}
+
+	/** @return the number of rows that have been converted for the current image. */
+	public int getBuiltRows() {
+		return built_rows;
+	}
+
+	public int getImageWidth() {
+		return image_width;
+	}
+
+	public int getImageHeight() {
+		return image_height;
+	}
+
+}
@@ -0,0 +1,94 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class keeps decode sessions for reuse, so that decoding a stream of images
+ *  doesn't allocate new greyscale rows for every image: a released session keeps the 
+ *  row buffers of its last image for the next one. It can be used by several
+ *  threads at the same time; every thread acquires its own session.
+ *  <p>
+ *  Usage:<br>
+ *  DecodeSession session = pool.acquire(device);<br>
+ *  try {<br>
+ *  &nbsp;&nbsp;result = decoder.decode(session, profile);<br>
+ *  } finally {<br>
+ *  &nbsp;&nbsp;pool.release(session);<br>
+ *  }<br>
+ *  
+ *  @see DecodeSession
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class DecodeSessionPool {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+	private final ConcurrentLinkedQueue<DecodeSession> sessions = new ConcurrentLinkedQueue<DecodeSession>();
+	private final int max_idle_sessions;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** @param max_idle_sessions the max. number of released sessions that are kept, 
+	 *         usually the number of decoding threads.
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeSessionPool(int max_idle_sessions) {
+		if (max_idle_sessions < 0) throw new IllegalArgumentException("max_idle_sessions must not be negative: " + max_idle_sessions);
+		this.max_idle_sessions = max_idle_sessions;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Returns a session for the given image, reusing a released session if possible.
+	 *  
+	 *  @param device the device containing the image.
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeSession acquire(Device device) {
+		DecodeSession session = sessions.poll();
+		if (session == null) return new DecodeSession(device);
+		session.reset(device);
+		return session;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns a session to the pool. The session must not be used any more. */
+	//---------------------------------------------------------------------------------------
+	public void release(DecodeSession session) {
+		session.reset(null);
+		if (sessions.size() < max_idle_sessions) sessions.offer(session);
+	}
+
+	/** @return the number of sessions that are currently kept for reuse. */
+	public int getIdleSessions() {
+		return sessions.size();
+	}
+
+}
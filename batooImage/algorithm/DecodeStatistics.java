@@ -0,0 +1,225 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class collects statistics about the recognition runs of the BarcodeDecoder:
+ *  the time spent in every stage, counters for the scanlines and a histogram 
+ *  of the decode latencies. 
+ *  <p>
+ *  The latency histogram has power of two buckets measured in microseconds, so 
+ *  bucket i counts the runs that took less than 2^i microseconds. 
+ *  <p>
+ *  All counters can be updated from several threads at the same time. The statistics 
+ *  can be published as a JMX MBean using the register() method.
+ *  <p>
+ *  Usage:<br>
+ *  DecodeStatistics statistics = new DecodeStatistics();<br>
+ *  statistics.register("default");<br>
+ *  BarcodeDecoder decoder = new BarcodeDecoder(statistics, false);<br>
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class DecodeStatistics implements DecodeListener, DecodeStatisticsMBean {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private static final int HISTOGRAM_BUCKETS = 32;
+
+	private final LongAdder decodes = new LongAdder();
+	private final LongAdder valid_decodes = new LongAdder();
+	private final LongAdder decode_nanos = new LongAdder();
+	private final LongAdder scanlines_tried = new LongAdder();
+	private final LongAdder scanlines_succeeded = new LongAdder();
+	private final LongAdder scanlines_valid = new LongAdder();
+	private final LongAdder[] stage_nanos = new LongAdder[STAGE_COUNT];
+	private final LongAdder[] latency_histogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	public DecodeStatistics() {
+		for (int i = 0; i < STAGE_COUNT; i++) stage_nanos[i] = new LongAdder();
+		for (int i = 0; i < HISTOGRAM_BUCKETS; i++) latency_histogram[i] = new LongAdder();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Registers this object at the platform MBean server, using the object name
+	 *  "batooImage:type=DecodeStatistics,name=" + name.
+	 *  
+	 *  @param name the name under which the statistics should be published.
+	 *  
+	 *  @return the object name used for the registration.
+	 *  
+	 *  @throws JMException if the registration failed. 
+	 */
+	//---------------------------------------------------------------------------------------
+	public ObjectName register(String name) throws JMException {
+		ObjectName object_name = new ObjectName("batooImage:type=DecodeStatistics,name=" + ObjectName.quote(name));
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this, object_name);
+		return object_name;
+	}
+
+	public void stageCompleted(int stage, long nanos) {
+		stage_nanos[stage].add(nanos);
+	}
+
+	public void scanlineCompleted(boolean recognized, boolean valid) {
+		scanlines_tried.increment();
+		if (recognized) scanlines_succeeded.increment();
+		if (valid) scanlines_valid.increment();
+	}
+
+	public void decodeCompleted(long nanos, boolean valid) {
+		decodes.increment();
+		if (valid) valid_decodes.increment();
+		decode_nanos.add(nanos);
+		latency_histogram[getBucket(nanos / 1000)].increment();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the index of the histogram bucket for the given latency.
+	 *  
+	 *  @param micros the latency in microseconds.
+	 *  
+	 *  @return the number of bits needed to represent the given value, limited to the 
+	 *          number of buckets. 
+	 */
+	//---------------------------------------------------------------------------------------
+	private static int getBucket(long micros) {
+		int bucket = 64 - Long.numberOfLeadingZeros(micros);
+		if (bucket >= HISTOGRAM_BUCKETS) bucket = HISTOGRAM_BUCKETS - 1;
+		return bucket;
+	}
+
+	public long getLatencyPercentileMicros(double percentile) {
+		long[] histogram = getLatencyHistogram();
+		long total = 0;
+		for (int i = 0; i < HISTOGRAM_BUCKETS; i++) total = total + histogram[i];
+		if (total == 0) return 0;
+
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long count = 0;
+		for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+			count = count + histogram[i];
+			// report the upper bound of the bucket:
+			if (count >= rank) return 1L << i;
+		}
+		return 1L << (HISTOGRAM_BUCKETS - 1);
+	}
+
+	public void reset() {
+		decodes.reset();
+		valid_decodes.reset();
+		decode_nanos.reset();
+		scanlines_tried.reset();
+		scanlines_succeeded.reset();
+		scanlines_valid.reset();
+		for (int i = 0; i < STAGE_COUNT; i++) stage_nanos[i].reset();
+		for (int i = 0; i < HISTOGRAM_BUCKETS; i++) latency_histogram[i].reset();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns a short summary of the collected statistics. */
+	//---------------------------------------------------------------------------------------
+	public String toString() {
+		return "decodes: " + getDecodes() + " (valid: " + getValidDecodes() + ")"
+			+ ", scanlines: " + getScanlinesTried() + " (succeeded: " + getScanlinesSucceeded()
+			+ ", checksum valid: " + getScanlinesChecksumValid() + ")"
+			+ ", sampling: " + getPathSamplingNanos() / 1000 + "us"
+			+ ", binarization: " + getBinarizationNanos() / 1000 + "us"
+			+ ", fields: " + getFieldExtractionNanos() / 1000 + "us"
+			+ ", matching: " + getDigitMatchingNanos() / 1000 + "us"
+			+ ", votes: " + getVoteResolutionNanos() / 1000 + "us"
+			+ ", p50: " + getLatencyPercentileMicros(50) + "us"
+			+ ", p99: " + getLatencyPercentileMicros(99) + "us";
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public long getDecodes() {
+		return decodes.sum();
+	}
+
+	public long getValidDecodes() {
+		return valid_decodes.sum();
+	}
+
+	public long getScanlinesTried() {
+		return scanlines_tried.sum();
+	}
+
+	public long getScanlinesSucceeded() {
+		return scanlines_succeeded.sum();
+	}
+
+	public long getScanlinesChecksumValid() {
+		return scanlines_valid.sum();
+	}
+
+	public long getPathSamplingNanos() {
+		return stage_nanos[STAGE_PATH_SAMPLING].sum();
+	}
+
+	public long getBinarizationNanos() {
+		return stage_nanos[STAGE_BINARIZATION].sum();
+	}
+
+	public long getFieldExtractionNanos() {
+		return stage_nanos[STAGE_FIELD_EXTRACTION].sum();
+	}
+
+	public long getDigitMatchingNanos() {
+		return stage_nanos[STAGE_DIGIT_MATCHING].sum();
+	}
+
+	public long getVoteResolutionNanos() {
+		return stage_nanos[STAGE_VOTE_RESOLUTION].sum();
+	}
+
+	public long getDecodeNanos() {
+		return decode_nanos.sum();
+	}
+
+	public long[] getLatencyHistogram() {
+		long[] histogram = new long[HISTOGRAM_BUCKETS];
+		for (int i = 0; i < HISTOGRAM_BUCKETS; i++) histogram[i] = latency_histogram[i].sum();
+		return histogram;
+	}
+
+}
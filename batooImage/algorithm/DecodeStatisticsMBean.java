@@ -0,0 +1,76 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  The JMX management interface of the DecodeStatistics class.
+ *  
+ *  @see DecodeStatistics
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public interface DecodeStatisticsMBean {
+
+	/** @return the number of recognition runs. */
+	public long getDecodes();
+
+	/** @return the number of recognition runs that returned a valid barcode. */
+	public long getValidDecodes();
+
+	/** @return the number of scanlines along which a recognition has been tried. */
+	public long getScanlinesTried();
+
+	/** @return the number of scanlines along which at least one digit has been recognized. */
+	public long getScanlinesSucceeded();
+
+	/** @return the number of scanlines that delivered a code with a correct checksum. */
+	public long getScanlinesChecksumValid();
+
+	/** @return the total time spent in sampling the scanlines, in nanoseconds. */
+	public long getPathSamplingNanos();
+
+	/** @return the total time spent in the binarization, in nanoseconds. */
+	public long getBinarizationNanos();
+
+	/** @return the total time spent in the field extraction, in nanoseconds. */
+	public long getFieldExtractionNanos();
+
+	/** @return the total time spent in matching digits, in nanoseconds. */
+	public long getDigitMatchingNanos();
+
+	/** @return the total time spent in combining the scanline results, in nanoseconds. */
+	public long getVoteResolutionNanos();
+
+	/** @return the total time of all recognition runs, in nanoseconds. */
+	public long getDecodeNanos();
+
+	/** @return the decode latency histogram. Entry i counts the runs that took 
+	 *          less than 2^i microseconds (and at least 2^(i-1)). */
+	public long[] getLatencyHistogram();
+
+	/** @return an estimation of the given latency percentile (0..100), in microseconds. */
+	public long getLatencyPercentileMicros(double percentile);
+
+	/** Sets all counters back to zero. */
+	public void reset();
+
+}
@@ -0,0 +1,329 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class groups the parameters of a recognition run. A profile is passed with every 
+ *  call of BarcodeDecoder.decode(), so different callers can trade the recognition rate
+ *  for speed without creating different decoders.
+ *  <p>
+ *  There are three predefined profiles:<br>
+ *  FAST - 20 scanlines, a strict digit matching and only a short search for a valid code.<br>
+ *  BALANCED - the original settings: 100 scanlines, and a search of up to 100 combinations
+ *  for a valid code. (used if no profile is given)<br>
+ *  THOROUGH - 250 scanlines, a tolerant digit matching and a long search for a valid code.<br>
+ *  <p>
+ *  The parameters of the start sentinel detection depend on the length of the scanline:
+ *  there is one set for paths up to small_path_length pixels, and one for longer paths.
+ *  <p>
+ *  Profiles can be converted from and to Properties, using the parameter names as keys.
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class DecoderProfile {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	public static final DecoderProfile BALANCED = new DecoderProfile(ScanPlan.DEFAULT, 800, 6, 10, 1, 30, 50, 1, 60, 20, 3, 100);
+
+	public static final DecoderProfile FAST = new DecoderProfile(new ScanPlan(20), 800, 6, 10, 1, 30, 50, 1, 50, 20, 3, 20);
+
+	public static final DecoderProfile THOROUGH = new DecoderProfile(new ScanPlan(250), 800, 6, 10, 1, 30, 50, 1, 70, 20, 3, 5000);
+
+	private final ScanPlan scan_plan;                          // the scanlines to use
+	private final int small_path_length;                       // max. length of a "small" path in pixels
+	private final int small_max_start_sentry_bar_differences;  // start sentinel parameters for small paths
+	private final int small_max_unit_length;
+	private final int small_min_unit_length;
+	private final int large_max_start_sentry_bar_differences;  // start sentinel parameters for larger paths
+	private final int large_max_unit_length;
+	private final int large_min_unit_length;
+	private final int max_difference_for_acceptance;           // max. difference of a digit to the code table
+	private final int binarization_window_divisor;             // the binarization window is path length / divisor
+	private final int threshold_bias;                          // pixels must be this much darker than the threshold
+	private final int max_amount_of_considered_codes;          // max. combinations tried to find a valid code
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** @param scan_plan the scanlines along which the barcode is searched.
+	 *  @param small_path_length paths up to this length (in pixels) use the "small" start
+	 *         sentinel parameters, longer ones the "large" parameters.
+	 *  @param small_max_start_sentry_bar_differences max. length difference (in pixels) of 
+	 *         the bars of the start sentinel, for small paths.
+	 *  @param small_max_unit_length max. width of a unit bar in pixels, for small paths.
+	 *  @param small_min_unit_length min. width of a unit bar in pixels, for small paths.
+	 *  @param large_max_start_sentry_bar_differences like above, for large paths.
+	 *  @param large_max_unit_length like above, for large paths.
+	 *  @param large_min_unit_length like above, for large paths.
+	 *  @param max_difference_for_acceptance the max. difference between the normed bar
+	 *         lengths of a digit and the best matching code table entry. 
+	 *  @param binarization_window_divisor the window of the adaptive threshold has a width
+	 *         of path length / binarization_window_divisor.
+	 *  @param threshold_bias a pixel is black if it is by this value darker than the 
+	 *         adaptive threshold.
+	 *  @param max_amount_of_considered_codes the max. number of digit combinations that 
+	 *         are tried to find a code with a correct checksum. (0 switches the search off)
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecoderProfile(ScanPlan scan_plan, int small_path_length, 
+			int small_max_start_sentry_bar_differences, int small_max_unit_length, int small_min_unit_length,
+			int large_max_start_sentry_bar_differences, int large_max_unit_length, int large_min_unit_length,
+			int max_difference_for_acceptance, int binarization_window_divisor, int threshold_bias, 
+			int max_amount_of_considered_codes) {
+		if (scan_plan == null) throw new IllegalArgumentException("scan_plan must not be null");
+		if (binarization_window_divisor <= 0) throw new IllegalArgumentException("binarization_window_divisor must be positive: " + binarization_window_divisor);
+		this.scan_plan = scan_plan;
+		this.small_path_length = small_path_length;
+		this.small_max_start_sentry_bar_differences = small_max_start_sentry_bar_differences;
+		this.small_max_unit_length = small_max_unit_length;
+		this.small_min_unit_length = small_min_unit_length;
+		this.large_max_start_sentry_bar_differences = large_max_start_sentry_bar_differences;
+		this.large_max_unit_length = large_max_unit_length;
+		this.large_min_unit_length = large_min_unit_length;
+		this.max_difference_for_acceptance = max_difference_for_acceptance;
+		this.binarization_window_divisor = binarization_window_divisor;
+		this.threshold_bias = threshold_bias;
+		this.max_amount_of_considered_codes = max_amount_of_considered_codes;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the predefined profile with the given name.
+	 *  
+	 *  @param name "fast", "balanced" or "thorough" (case is ignored)
+	 *  
+	 *  @return the profile, or null if there is no profile with that name.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static DecoderProfile forName(String name) {
+		if ("fast".equalsIgnoreCase(name)) return FAST;
+		if ("balanced".equalsIgnoreCase(name)) return BALANCED;
+		if ("thorough".equalsIgnoreCase(name)) return THOROUGH;
+		return null;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns a copy of this profile that uses the given scanlines.
+	 *  
+	 *  @param plan the scanlines to use.
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecoderProfile withScanPlan(ScanPlan plan) {
+		return new DecoderProfile(plan, small_path_length, 
+			small_max_start_sentry_bar_differences, small_max_unit_length, small_min_unit_length,
+			large_max_start_sentry_bar_differences, large_max_unit_length, large_min_unit_length,
+			max_difference_for_acceptance, binarization_window_divisor, threshold_bias, 
+			max_amount_of_considered_codes);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates a profile from the given properties. Every parameter that is not contained
+	 *  in the properties is taken from the given defaults.
+	 *  
+	 *  @param properties the parameters, using the names returned by toProperties() as keys.
+	 *  @param defaults the profile that provides the missing parameters.
+	 *  
+	 *  @return the new profile.
+	 *  
+	 *  @throws IllegalArgumentException if a parameter is not a valid number.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static DecoderProfile fromProperties(Properties properties, DecoderProfile defaults) {
+		ScanPlan plan = defaults.scan_plan;
+		ScanPlan scan_plan = new ScanPlan(
+			getInt(properties, "scanlines", plan.getAmountScanlines()), 
+			getInt(properties, "scanline_spacing", plan.getSpacing()),
+			getFloat(properties, "extent_left", plan.getLeft()), 
+			getFloat(properties, "extent_top", plan.getTop()),
+			getFloat(properties, "extent_right", plan.getRight()), 
+			getFloat(properties, "extent_bottom", plan.getBottom()));
+
+		return new DecoderProfile(scan_plan,
+			getInt(properties, "small_path_length", defaults.small_path_length),
+			getInt(properties, "small_max_start_sentry_bar_differences", defaults.small_max_start_sentry_bar_differences),
+			getInt(properties, "small_max_unit_length", defaults.small_max_unit_length),
+			getInt(properties, "small_min_unit_length", defaults.small_min_unit_length),
+			getInt(properties, "large_max_start_sentry_bar_differences", defaults.large_max_start_sentry_bar_differences),
+			getInt(properties, "large_max_unit_length", defaults.large_max_unit_length),
+			getInt(properties, "large_min_unit_length", defaults.large_min_unit_length),
+			getInt(properties, "max_difference_for_acceptance", defaults.max_difference_for_acceptance),
+			getInt(properties, "binarization_window_divisor", defaults.binarization_window_divisor),
+			getInt(properties, "threshold_bias", defaults.threshold_bias),
+			getInt(properties, "max_amount_of_considered_codes", defaults.max_amount_of_considered_codes));
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Loads a profile from a properties file, like the ones written by store().
+	 *  Parameters that are missing in the file are taken from the BALANCED profile.
+	 *  
+	 *  @param file the properties file.
+	 *  
+	 *  @return the loaded profile.
+	 *  
+	 *  @throws IOException if the file can't be read.
+	 *  @throws IllegalArgumentException if the file contains invalid values.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static DecoderProfile load(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		return fromProperties(properties, BALANCED);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Stores this profile in a properties file.
+	 *  
+	 *  @param file the file to write.
+	 *  @param comments a description that is written at the top of the file, or null.
+	 *  
+	 *  @throws IOException if the file can't be written.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void store(File file, String comments) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			toProperties().store(out, comments);
+		} finally {
+			out.close();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return all parameters of this profile as properties. */
+	//---------------------------------------------------------------------------------------
+	public Properties toProperties() {
+		Properties properties = new Properties();
+		properties.setProperty("scanlines", "" + scan_plan.getAmountScanlines());
+		properties.setProperty("scanline_spacing", "" + scan_plan.getSpacing());
+		properties.setProperty("extent_left", "" + scan_plan.getLeft());
+		properties.setProperty("extent_top", "" + scan_plan.getTop());
+		properties.setProperty("extent_right", "" + scan_plan.getRight());
+		properties.setProperty("extent_bottom", "" + scan_plan.getBottom());
+		properties.setProperty("small_path_length", "" + small_path_length);
+		properties.setProperty("small_max_start_sentry_bar_differences", "" + small_max_start_sentry_bar_differences);
+		properties.setProperty("small_max_unit_length", "" + small_max_unit_length);
+		properties.setProperty("small_min_unit_length", "" + small_min_unit_length);
+		properties.setProperty("large_max_start_sentry_bar_differences", "" + large_max_start_sentry_bar_differences);
+		properties.setProperty("large_max_unit_length", "" + large_max_unit_length);
+		properties.setProperty("large_min_unit_length", "" + large_min_unit_length);
+		properties.setProperty("max_difference_for_acceptance", "" + max_difference_for_acceptance);
+		properties.setProperty("binarization_window_divisor", "" + binarization_window_divisor);
+		properties.setProperty("threshold_bias", "" + threshold_bias);
+		properties.setProperty("max_amount_of_considered_codes", "" + max_amount_of_considered_codes);
+		return properties;
+	}
+
+	private static int getInt(Properties properties, String key, int default_value) {
+		String value = properties.getProperty(key);
+		if (value == null) return default_value;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid value for " + key + ": " + value);
+		}
+	}
+
+	private static float getFloat(Properties properties, String key, float default_value) {
+		String value = properties.getProperty(key);
+		if (value == null) return default_value;
+		try {
+			return Float.parseFloat(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid value for " + key + ": " + value);
+		}
+	}
+
+	public String toString() {
+		return toProperties().toString();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public ScanPlan getScanPlan() {
+		return scan_plan;
+	}
+
+	public int getSmallPathLength() {
+		return small_path_length;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the max. length difference of the start sentinel bars for a path of 
+	 *          the given length. */
+	//---------------------------------------------------------------------------------------
+	public int getMaxStartSentryBarDifferences(int path_length) {
+		return (path_length <= small_path_length) ? small_max_start_sentry_bar_differences : large_max_start_sentry_bar_differences;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the max. width of a unit bar for a path of the given length. */
+	//---------------------------------------------------------------------------------------
+	public int getMaxUnitLength(int path_length) {
+		return (path_length <= small_path_length) ? small_max_unit_length : large_max_unit_length;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the min. width of a unit bar for a path of the given length. */
+	//---------------------------------------------------------------------------------------
+	public int getMinUnitLength(int path_length) {
+		return (path_length <= small_path_length) ? small_min_unit_length : large_min_unit_length;
+	}
+
+	public int getMaxDifferenceForAcceptance() {
+		return max_difference_for_acceptance;
+	}
+
+	public int getBinarizationWindowDivisor() {
+		return binarization_window_divisor;
+	}
+
+	public int getThresholdBias() {
+		return threshold_bias;
+	}
+
+	public int getMaxAmountOfConsideredCodes() {
+		return max_amount_of_considered_codes;
+	}
+
+}
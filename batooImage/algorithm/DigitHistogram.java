@@ -0,0 +1,228 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class collects the votes of the scanlines for the digits at each position of 
+ *  an EAN13 code. 
+ *  <p>
+ *  The votes are kept in a histogram with one counter per position and digit. A 
+ *  scanline that has recognized a code with a correct checksum gives 100 votes to each
+ *  of its digits, a scanline with an incomplete or invalid code gives one vote to each
+ *  recognized digit. So the valid scanlines decide, and the invalid ones only break ties.
+ *  <p>
+ *  Histograms of different scanlines or threads can be merged by adding their 
+ *  counters. The ranking of the digits at a position is computed on demand: by votes,
+ *  and for equal votes by the first scanline that has recognized the digit. Because
+ *  the scanline indices are stored with the votes, the ranking doesn't depend on the 
+ *  order in which the scanlines have been decoded or merged.
+ *  <p>
+ *  A histogram is used by one thread at a time.
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class DigitHistogram {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	/** The votes of a scanline with a valid code for each of its digits. */
+	public static final int VALID_VOTES = 100;
+
+	/** The votes of a scanline without a valid code for each recognized digit. */
+	public static final int INVALID_VOTES = 1;
+
+	private final int[][] votes = new int[13][10];        // [position][digit]
+	private final int[][] first_lines = new int[13][10];  // the first scanline of each digit
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	public DigitHistogram() {
+		clear();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Adds the digits recognized along one scanline.
+	 *  
+	 *  @param numbers the 13 recognized digits, -1 for digits that have not been recognized.
+	 *  @param valid true, if the digits form a code with a correct checksum.
+	 *  @param line the index of the scanline.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void add(int[] numbers, boolean valid, int line) {
+		int amount = valid ? VALID_VOTES : INVALID_VOTES;
+		for (int j = 0; j < 13; j++) {
+			if (numbers[j] >= 0) addVotes(j, numbers[j], amount, line);
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Adds votes for one digit at one position.
+	 *  
+	 *  @param position the position in the code (0..12).
+	 *  @param digit the digit (0..9).
+	 *  @param amount the number of votes.
+	 *  @param line the index of the scanline that has recognized the digit.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void addVotes(int position, int digit, int amount, int line) {
+		votes[position][digit] += amount;
+		if (line < first_lines[position][digit]) first_lines[position][digit] = line;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Adds all votes of the given histogram to this one. */
+	//---------------------------------------------------------------------------------------
+	public void merge(DigitHistogram other) {
+		for (int j = 0; j < 13; j++) {
+			for (int d = 0; d < 10; d++) {
+				votes[j][d] += other.votes[j][d];
+				if (other.first_lines[j][d] < first_lines[j][d]) first_lines[j][d] = other.first_lines[j][d];
+			}
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Removes all votes. */
+	//---------------------------------------------------------------------------------------
+	public void clear() {
+		for (int j = 0; j < 13; j++) {
+			for (int d = 0; d < 10; d++) {
+				votes[j][d] = 0;
+				first_lines[j][d] = Integer.MAX_VALUE;
+			}
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the votes for the given digit at the given position. */
+	//---------------------------------------------------------------------------------------
+	public int getVotes(int position, int digit) {
+		return votes[position][digit];
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the digit with the most votes at the given position, or -1 if no 
+	 *          digit has been recognized there. */
+	//---------------------------------------------------------------------------------------
+	public int getBestDigit(int position) {
+		int best = -1;
+		for (int d = 0; d < 10; d++) {
+			if ((votes[position][d] > 0) && ((best < 0) || isRankedBefore(position, d, best))) best = d;
+		}
+		return best;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the most votes of a digit other than the given one at the given position. */
+	//---------------------------------------------------------------------------------------
+	public int getBestOtherVotes(int position, int digit) {
+		int best_votes = 0;
+		for (int d = 0; d < 10; d++) {
+			if ((d != digit) && (votes[position][d] > best_votes)) best_votes = votes[position][d];
+		}
+		return best_votes;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the most likely code: the digit with the most votes at each position,
+	 *          -1 for positions without votes. */
+	//---------------------------------------------------------------------------------------
+	public int[] getBestDigits() {
+		int[] code = new int[13];
+		for (int j = 0; j < 13; j++) code[j] = getBestDigit(j);
+		return code;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Ranks the recognized digits at each position.
+	 *  
+	 *  @return one array per position, containing the digits with at least one vote, 
+	 *          ordered by their votes in descending order.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int[][] getRanking() {
+		int[][] ranking = new int[13][];
+		int[] digits = new int[10];
+		for (int j = 0; j < 13; j++) {
+			int[] counts = votes[j];
+			int amount = 0;
+
+			// insertion sort of the (at most ten) digits with votes:
+			for (int d = 0; d < 10; d++) {
+				if (counts[d] == 0) continue;
+				int i = amount++;
+				while ((i > 0) && isRankedBefore(j, d, digits[i - 1])) {
+					digits[i] = digits[i - 1];
+					i--;
+				}
+				digits[i] = d;
+			}
+
+			ranking[j] = new int[amount];
+			System.arraycopy(digits, 0, ranking[j], 0, amount);
+		}
+		return ranking;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns true if digit a has more votes than digit b at the given position, or the 
+	 *  same votes and has been recognized by an earlier scanline. */
+	//---------------------------------------------------------------------------------------
+	private boolean isRankedBefore(int position, int a, int b) {
+		if (votes[position][a] != votes[position][b]) return votes[position][a] > votes[position][b];
+		return first_lines[position][a] < first_lines[position][b];
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the ranked digits and their votes, one line per rank and one column per
+	 *  position, "x" for missing digits. */
+	//---------------------------------------------------------------------------------------
+	public String toString() {
+		int[][] ranking = getRanking();
+		StringBuilder digits = new StringBuilder("detected digits:\n");
+		StringBuilder counts = new StringBuilder("# of their occurence:\n");
+		for (int i = 0; i < 10; i++) {
+			digits.append(i).append(" :   ");
+			counts.append(i).append(" :   ");
+			for (int j = 0; j < 13; j++) {
+				if (i < ranking[j].length) {
+					digits.append(ranking[j][i]).append("  ");
+					counts.append(votes[j][ranking[j][i]]).append("  ");
+				} else {
+					digits.append("x  ");
+					counts.append("0  ");
+				}
+			}
+			digits.append('\n');
+			counts.append('\n');
+		}
+		return digits.append(counts).toString();
+	}
+
+}
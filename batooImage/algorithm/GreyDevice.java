@@ -0,0 +1,166 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  An image device that holds greyscale rows, one byte per pixel. Only the rows that
+ *  have been set are stored, so a loader can keep just the rows of the scanlines
+ *  instead of the whole image.
+ *  <p>
+ *  The paths given to getPath() may only cross rows that have been set. The rows
+ *  must be set before the device is decoded; after that it can be used by several
+ *  threads at the same time.
+ *
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class GreyDevice implements Device {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+	private final int image_width;
+	private final int image_height;
+	private final byte[][] rows;        // the greyscale values of each row, null for rows that haven't been set
+	private int stored_rows = 0;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Creates a device without any rows.
+	 *
+	 *  @param width the width of the image.
+	 *  @param height the height of the image.
+	 */
+	//---------------------------------------------------------------------------------------
+	public GreyDevice(int width, int height) {
+		if ((width <= 0) || (height <= 0)) throw new IllegalArgumentException("invalid image size: " + width + "x" + height);
+		this.image_width = width;
+		this.image_height = height;
+		this.rows = new byte[height][];
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public Barcode recognize() {
+		return BarcodeDecoder.DEFAULT.recognizeBarcode(this);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Sets the greyscale values of a row.
+	 *
+	 *  @param y the row.
+	 *  @param grey contains the greyscale values (0..255) of the row.
+	 *  @param offset the position of the first value in the array.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void setRow(int y, byte[] grey, int offset) {
+		if ((y < 0) || (y >= image_height)) throw new IllegalArgumentException("row out of range: " + y);
+		if (rows[y] == null) {
+			rows[y] = new byte[image_width];
+			stored_rows++;
+		}
+		System.arraycopy(grey, offset, rows[y], 0, image_width);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return true, if the given row has been set. */
+	//---------------------------------------------------------------------------------------
+	public boolean hasRow(int y) {
+		return (y >= 0) && (y < image_height) && (rows[y] != null);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates a device containing a part of this device. The rows are copied, rows that
+	 *  haven't been set are left out.
+	 *
+	 *  @param x the left border of the part.
+	 *  @param y the upper border of the part.
+	 *  @param width the width of the part.
+	 *  @param height the height of the part.
+	 */
+	//---------------------------------------------------------------------------------------
+	public GreyDevice crop(int x, int y, int width, int height) {
+		if ((x < 0) || (y < 0) || (x + width > image_width) || (y + height > image_height)) {
+			throw new IllegalArgumentException("part out of range: " + x + "/" + y + " " + width + "x" + height);
+		}
+		GreyDevice part = new GreyDevice(width, height);
+		for (int i = 0; i < height; i++) {
+			if (rows[y + i] != null) part.setRow(i, rows[y + i], x);
+		}
+		return part;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Extracts the greyscale values along a path, as RGB values with three equal
+	 *  components, using the pixel that contains the current position.
+	 *
+	 *  @throws IllegalStateException if the path crosses a row that hasn't been set.
+	 *
+	 *  @see ImageDevice#getPath(int, int, int, int, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public int[][] getPath(int x1, int y1, int x2, int y2, int w) {
+		int dx = x2 - x1;
+		int dy = y2 - y1;
+		int distance = (int) Math.sqrt((double) dx * dx + (double) dy * dy);
+		int[][] path = new int[distance][3];
+		if (distance == 0) return path;
+
+		// the current position and the step width in fixed point values:
+		long px = ((long) x1) << 16;
+		long py = ((long) y1) << 16;
+		long step_x = (((long) dx) << 16) / distance;
+		long step_y = (((long) dy) << 16) / distance;
+
+		for (int i = 0; i < distance; i++) {
+			byte[] row = rows[(int) (py >> 16)];
+			if (row == null) throw new IllegalStateException("the row " + (py >> 16) + " hasn't been set");
+			int grey = row[(int) (px >> 16)] & 0xFF;
+			path[i][0] = grey;
+			path[i][1] = grey;
+			path[i][2] = grey;
+			px = px + step_x;
+			py = py + step_y;
+		}
+		return path;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public int getImageWidth() {
+		return image_width;
+	}
+
+	public int getImageHeight() {
+		return image_height;
+	}
+
+	/** @return the number of rows that have been set. */
+	public int getStoredRows() {
+		return stored_rows;
+	}
+
+}
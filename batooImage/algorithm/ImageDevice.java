@@ -40,6 +40,7 @@ public class ImageDevice implements Device {
 	private byte pixel_data[];        // a byte array containing the image information
 	private int image_width;          // the width of the image contained in the byte array
 	private int image_height;         // the height of the image contained in the byte array
+	private boolean bilinear_sampling = false;  // interpolate between pixels along a path
 	
 	//---------------------------------------------------------------------------------------
 	// CONSTRUCTOR
@@ -66,7 +67,7 @@ public class ImageDevice implements Device {
    */
 	//---------------------------------------------------------------------------------------
 	public Barcode recognize() {
-		Barcode code = BarcodeDecoder.recognizeBarcode(this);
+		Barcode code = BarcodeDecoder.DEFAULT.recognizeBarcode(this);
 		return code;
 	}
 
@@ -92,8 +93,30 @@ public class ImageDevice implements Device {
 		return getPathFromBMPData(pixel_data, w, x1, y1, x2, y2);
 	}
 
+	//---------------------------------------------------------------------------------------
+	/** Converts a row of the image into greyscale values (see Luminance), without 
+	 *  creating the RGB arrays of getPath().
+	 *  
+	 *  @param y the row.
+	 *  @param grey the array that receives the values.
+	 *  @param offset the position of the first value in the array.
+	 */
+	//---------------------------------------------------------------------------------------
+	void getGreyRow(int y, byte[] grey, int offset) {
+		int pos = 54 + y * ((image_width * 3 + 3) & ~3);
+		for (int x = 0; x < image_width; x++) {
+			grey[offset + x] = (byte) Luminance.getGrey(pixel_data, pos);
+			pos += 3;
+		}
+	}
+
 	//---------------------------------------------------------------------------------------
 	/** Extracts color values from the image along a specified path.
+	 *  <p>
+	 *  The path is followed in fixed point steps (16 fractional bits), one step per pixel
+	 *  of path length. Without bilinear sampling the color of the pixel containing the
+	 *  current position is used, otherwise the colors of the four surrounding pixels
+	 *  are interpolated.
 	 * 
 	 *  @param bmp_data array, containing the image data in the bmp format
 	 *  @param x1 x-Pos of path starting point
@@ -108,34 +131,75 @@ public class ImageDevice implements Device {
 	private int[][] getPathFromBMPData(byte[] bmp_data, int width, int x1, int y1, int x2, int y2) {
 
 		// all distances are measured in "pixels"
-		float dx = Math.abs(x2 - x1);
-		float dy = Math.abs(y2 - y1);
+		int dx = x2 - x1;
+		int dy = y2 - y1;
 
-		int distance = new Float(Math.sqrt(dx * dx + dy * dy)).intValue();
+		int distance = (int) Math.sqrt((double) dx * dx + (double) dy * dy);
 		int[][] path = new int[distance][3];
+		if (distance == 0) return path;
+
+		// the rows of a bmp file are padded to a multiple of four bytes:
+		int row_size = (width * 3 + 3) & ~3;
+
+		// the current position and the step width in fixed point values:
+		long px = ((long) x1) << 16;
+		long py = ((long) y1) << 16;
+		long step_x = (((long) dx) << 16) / distance;
+		long step_y = (((long) dy) << 16) / distance;
 
-		float factor, px, py;
 		int px_i, py_i;
 		int pos;
 
-		// collect the color information:
+		if (!bilinear_sampling) {
+			// collect the color information:
+			for (int i = 0; i < distance; i++) {
+				px_i = (int) (px >> 16);
+				py_i = (int) (py >> 16);
+
+				pos = 54 + py_i * row_size + px_i * 3;
+				path[i][2] = getIntValue(bmp_data[pos]);
+				path[i][1] = getIntValue(bmp_data[pos + 1]);
+				path[i][0] = getIntValue(bmp_data[pos + 2]);
+
+				px = px + step_x;
+				py = py + step_y;
+			}
+			return path;
+		}
+
+		// interpolate the color information, using 8 bit weights:
+		int fx, fy, w00, w10, w01, w11;
+		int pos00, pos10, pos01, pos11;
 		for (int i = 0; i < distance; i++) {
-			factor = ((float) i / distance);
-			px = x1 + dx * factor;
-			py = y1 + dy * factor;
-			px_i = new Float(px).intValue();
-			py_i = new Float(py).intValue();
-
-			pos = 54 + (py_i * width + px_i) * 3;
-			path[i][2] = getIntValue(bmp_data[pos]);
-			path[i][1] = getIntValue(bmp_data[pos + 1]);
-			path[i][0] = getIntValue(bmp_data[pos + 2]);
+			px_i = (int) (px >> 16);
+			py_i = (int) (py >> 16);
+			fx = (int) (px >> 8) & 0xFF;
+			fy = (int) (py >> 8) & 0xFF;
+
+			w00 = (256 - fx) * (256 - fy);
+			w10 = fx * (256 - fy);
+			w01 = (256 - fx) * fy;
+			w11 = fx * fy;
+
+			pos00 = 54 + py_i * row_size + px_i * 3;
+			pos10 = (px_i < image_width - 1) ? pos00 + 3 : pos00;
+			pos01 = (py_i < image_height - 1) ? pos00 + row_size : pos00;
+			pos11 = (px_i < image_width - 1) ? pos01 + 3 : pos01;
+
+			for (int c = 0; c < 3; c++) {
+				path[i][2 - c] = (w00 * getIntValue(bmp_data[pos00 + c]) + w10 * getIntValue(bmp_data[pos10 + c])
+					+ w01 * getIntValue(bmp_data[pos01 + c]) + w11 * getIntValue(bmp_data[pos11 + c])) >> 16;
+			}
+
+			px = px + step_x;
+			py = py + step_y;
 		}
 		return path;
 	}
 
 	//---------------------------------------------------------------------------------------
 	/** Converts the given byte value representing a "color" into an int value.
+	 *  The byte is interpreted as unsigned, so -1 becomes 255 and -128 becomes 128.
 	 *  
 	 *  @param byte_value The color in the byte format (-128..127)
 	 *  
@@ -143,13 +207,7 @@ public class ImageDevice implements Device {
 	 */
 	//---------------------------------------------------------------------------------------
 	private static int getIntValue(byte byte_value) {
-		if (byte_value >= 0) {
-			int value = byte_value;
-			return value;
-		} else {
-			int value = 255 + byte_value;
-			return value;
-		}
+		return byte_value & 0xFF;
 	}
 
 
@@ -171,4 +229,20 @@ public class ImageDevice implements Device {
 		return image_height;
 	}
 
+	//---------------------------------------------------------------------------------------
+	/** @return true, if the color values along a path are interpolated bilinearly. */
+	//---------------------------------------------------------------------------------------
+	public boolean isBilinearSampling() {
+		return bilinear_sampling;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Specifies if the color values along a path should be interpolated bilinearly
+	 *  between the four surrounding pixels, instead of taking the nearest pixel. 
+	 *  This gives smoother values along scanlines that are not horizontal. */
+	//---------------------------------------------------------------------------------------
+	public void setBilinearSampling(boolean bilinear_sampling) {
+		this.bilinear_sampling = bilinear_sampling;
+	}
+
 }
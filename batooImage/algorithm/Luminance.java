@@ -0,0 +1,84 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class converts RGB values into greyscale values, using the luminance weights 
+ *  of ITU-R BT.601 (0.299 R + 0.587 G + 0.114 B).
+ *  <p>
+ *  The weights are stored in a lookup table with 256 entries per color, in the BGR 
+ *  order of the bitmap data, as 16 bit fixed point values that sum up to 65536. The 
+ *  rounding offset is included in the blue entries, so a conversion consists of three
+ *  table lookups, two additions and a shift. Grey pixels keep their value.
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class Luminance {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	// the weights in 16 bit fixed point:
+	private static final int WEIGHT_R = 19595;
+	private static final int WEIGHT_G = 38470;
+	private static final int WEIGHT_B = 7471;
+
+	// the weighted values: blue at 0..255, green at 256..511, red at 512..767
+	private static final int[] TABLE = new int[3 * 256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			TABLE[i] = WEIGHT_B * i + 0x8000;
+			TABLE[256 + i] = WEIGHT_G * i;
+			TABLE[512 + i] = WEIGHT_R * i;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** @param r,g,b the color values (0..255).
+	 *  
+	 *  @return the greyscale value (0..255).
+	 */
+	//---------------------------------------------------------------------------------------
+	public static int getGrey(int r, int g, int b) {
+		return (TABLE[b] + TABLE[256 + g] + TABLE[512 + r]) >> 16;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Converts a pixel of bitmap data without converting the bytes into ints first.
+	 *  
+	 *  @param data the bitmap data.
+	 *  @param pos the position of the blue value of the pixel, followed by green and red.
+	 *  
+	 *  @return the greyscale value (0..255).
+	 */
+	//---------------------------------------------------------------------------------------
+	public static int getGrey(byte[] data, int pos) {
+		return (TABLE[data[pos] & 0xFF] + TABLE[256 + (data[pos + 1] & 0xFF)] + TABLE[512 + (data[pos + 2] & 0xFF)]) >> 16;
+	}
+
+}
@@ -0,0 +1,321 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  This class estimates the orientation and the position of a barcode cheaply, so that
+ *  the BarcodeDecoder can place a few scanlines perpendicular to its bars instead of
+ *  sweeping many angles or rotating the image beforehand.
+ *  <p>
+ *  Pairs of neighbouring rows are sampled, and the greyscale gradient is computed
+ *  between each 2x2 block of pixels. The rows are divided into cells, and the structure
+ *  tensor (the sums of gx*gx, gy*gy and gx*gy) of each cell gives the dominant gradient
+ *  direction of the cell and its coherence: a barcode consists of many parallel edges,
+ *  so its cells have a strong gradient whose direction is the same everywhere. The
+ *  angles of the cells are collected in a histogram, weighted by their gradient
+ *  energy and the square of their coherence. Of the cells near the peak of the
+ *  histogram, the largest connected group is taken as the barcode: its summed tensor
+ *  gives the exact angle, and its cells give the centre and the extent of the code.
+ *  <p>
+ *  Only a fraction of the rows is read, and no rows are read twice. The device must
+ *  provide all rows of the image, which a GreyDevice holding only the rows of a scan
+ *  plan doesn't. The rows of a PresenceDetector are horizontal, so it may reject
+ *  images with barcodes rotated by more than about 30 degrees.
+ *  <p>
+ *  Like the BarcodeDecoder, an estimator can be used by several threads at the same time.
+ *
+ *  @see BarcodeDecoder#BarcodeDecoder(DecodeListener, boolean, PresenceDetector, OrientationEstimator)
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class OrientationEstimator {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	/** Samples 64 pairs of rows, needs an RMS gradient of 8 grey levels per pixel and
+	 *  places 6 scanlines. */
+	public static final OrientationEstimator DEFAULT = new OrientationEstimator(64, 8, 6);
+
+	private static final int ANGLE_BINS = 36;           // 5 degrees per bin
+	private static final int MIN_CELL_WIDTH = 16;       // pixels
+	private static final float MIN_COHERENCE = 0.5f;    // of a cell that belongs to a barcode
+
+	private final int amount_rows;         // the number of sampled pairs of rows
+	private final int min_gradient;        // the min. RMS gradient of a cell
+	private final int amount_scanlines;    // the number of scanline positions
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** @param amount_rows the number of pairs of neighbouring rows that are sampled.
+	 *  @param min_gradient the min. root mean square of the gradient in a cell (grey levels
+	 *         per pixel) for the cell to be considered at all.
+	 *  @param amount_scanlines the number of scanlines placed across the bars. Each of them
+	 *         is decoded in both directions.
+	 */
+	//---------------------------------------------------------------------------------------
+	public OrientationEstimator(int amount_rows, int min_gradient, int amount_scanlines) {
+		if (amount_rows <= 0) throw new IllegalArgumentException("amount_rows must be positive: " + amount_rows);
+		if ((min_gradient < 0) || (min_gradient > 255)) throw new IllegalArgumentException("min_gradient must be between 0 and 255: " + min_gradient);
+		if (amount_scanlines <= 0) throw new IllegalArgumentException("amount_scanlines must be positive: " + amount_scanlines);
+		this.amount_rows = amount_rows;
+		this.min_gradient = min_gradient;
+		this.amount_scanlines = amount_scanlines;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the scanlines across the bars of the barcode in the given image.
+	 *
+	 *  @return the scanlines (see BarcodeOrientation.getScanlines()), or an empty array
+	 *          if no barcode has been found.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int[][] getScanlines(Device device) {
+		BarcodeOrientation orientation = estimate(device);
+		if (orientation == null) return new int[0][];
+		return orientation.getScanlines(amount_scanlines, device.getImageWidth(), device.getImageHeight());
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Estimates the orientation of the barcode in the given image.
+	 *
+	 *  @param device provides access to the image.
+	 *
+	 *  @return the orientation and position of the barcode, or null if there are no
+	 *          cells with a strong and coherent gradient.
+	 */
+	//---------------------------------------------------------------------------------------
+	public BarcodeOrientation estimate(Device device) {
+		int w = device.getImageWidth();
+		int h = device.getImageHeight();
+		if ((w < 3) || (h < 3)) return null;
+
+		// the sampled rows and the cells:
+		int spacing = Math.max(2, h / amount_rows);
+		int rows = Math.min(amount_rows, (h - 1) / spacing);
+		int cell_width = Math.max(MIN_CELL_WIDTH, spacing);
+		int columns = Math.max(1, (w - 1) / cell_width);
+		int first_row = (h - 1 - (rows - 1) * spacing) >> 1;
+
+		// the structure tensor of each cell:
+		double[] jxx = new double[rows * columns];
+		double[] jyy = new double[rows * columns];
+		double[] jxy = new double[rows * columns];
+		int[] upper = new int[w];
+		int[] lower = new int[w];
+		byte[] row = new byte[w];
+		for (int r = 0; r < rows; r++) {
+			int y = first_row + r * spacing;
+			int n = readRow(device, y, w, upper, row);
+			n = Math.min(n, readRow(device, y + 1, w, lower, row));
+			for (int x = 0; x < n - 1; x++) {
+				int gx = (upper[x + 1] - upper[x] + lower[x + 1] - lower[x]);
+				int gy = (lower[x] - upper[x] + lower[x + 1] - upper[x + 1]);
+				int cell = r * columns + Math.min(columns - 1, x / cell_width);
+				jxx[cell] += gx * gx;
+				jyy[cell] += gy * gy;
+				jxy[cell] += gx * gy;
+			}
+		}
+
+		// the angle, coherence and weight of each cell:
+		// (the gradients above are twice the mean gradient of the 2x2 blocks)
+		double min_energy = 4.0 * min_gradient * min_gradient * cell_width;
+		double[] angles = new double[rows * columns];
+		double[] coherences = new double[rows * columns];
+		double[] histogram = new double[ANGLE_BINS];
+		for (int cell = 0; cell < angles.length; cell++) {
+			double energy = jxx[cell] + jyy[cell];
+			if (energy < min_energy) continue;
+			angles[cell] = getAngle(jxx[cell], jyy[cell], jxy[cell]);
+			coherences[cell] = getCoherence(jxx[cell], jyy[cell], jxy[cell]);
+			if (coherences[cell] < MIN_COHERENCE) continue;
+			histogram[getBin(angles[cell])] += energy * coherences[cell] * coherences[cell];
+		}
+
+		// the peak of the histogram, smoothed over the neighbouring bins:
+		int peak = -1;
+		double peak_weight = 0;
+		for (int b = 0; b < ANGLE_BINS; b++) {
+			double weight = histogram[(b + ANGLE_BINS - 1) % ANGLE_BINS] + 2 * histogram[b] + histogram[(b + 1) % ANGLE_BINS];
+			if (weight > peak_weight) {
+				peak_weight = weight;
+				peak = b;
+			}
+		}
+		if (peak < 0) return null;
+
+		// the cells near the peak:
+		boolean[] selected = new boolean[angles.length];
+		for (int cell = 0; cell < angles.length; cell++) {
+			if (coherences[cell] < MIN_COHERENCE) continue;
+			int distance = Math.abs(getBin(angles[cell]) - peak);
+			selected[cell] = Math.min(distance, ANGLE_BINS - distance) <= 1;
+		}
+
+		// the connected group of these cells with the most energy is the barcode:
+		// (cells are connected to their 8 neighbours, so that rotated codes stay connected)
+		int[] group = new int[angles.length];
+		int[] stack = new int[angles.length];
+		int best_group = 0;
+		double best_energy = 0;
+		int groups = 0;
+		for (int start = 0; start < angles.length; start++) {
+			if (!selected[start] || (group[start] != 0)) continue;
+			groups++;
+			double energy = 0;
+			int size = 0;
+			stack[size++] = start;
+			group[start] = groups;
+			while (size > 0) {
+				int cell = stack[--size];
+				energy += jxx[cell] + jyy[cell];
+				int r = cell / columns;
+				int c = cell % columns;
+				for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++) {
+					for (int nc = Math.max(0, c - 1); nc <= Math.min(columns - 1, c + 1); nc++) {
+						int neighbour = nr * columns + nc;
+						if (selected[neighbour] && (group[neighbour] == 0)) {
+							group[neighbour] = groups;
+							stack[size++] = neighbour;
+						}
+					}
+				}
+			}
+			if (energy > best_energy) {
+				best_energy = energy;
+				best_group = groups;
+			}
+		}
+
+		// the angle from the summed tensor and the energy weighted centre of the group:
+		double sxx = 0, syy = 0, sxy = 0;
+		double center_x = 0, center_y = 0;
+		for (int cell = 0; cell < angles.length; cell++) {
+			if (group[cell] != best_group) continue;
+			double energy = jxx[cell] + jyy[cell];
+			sxx += jxx[cell];
+			syy += jyy[cell];
+			sxy += jxy[cell];
+			center_x += energy * getCellX(cell, columns, cell_width, w);
+			center_y += energy * (first_row + (cell / columns) * spacing + 0.5);
+		}
+		center_x /= best_energy;
+		center_y /= best_energy;
+		double angle = getAngle(sxx, syy, sxy);
+
+		// the extent of the group across and along the bars:
+		double dx = Math.cos(angle);
+		double dy = Math.sin(angle);
+		double min_across = 0, max_across = 0, min_along = 0, max_along = 0;
+		for (int cell = 0; cell < angles.length; cell++) {
+			if (group[cell] != best_group) continue;
+			double x = getCellX(cell, columns, cell_width, w) - center_x;
+			double y = first_row + (cell / columns) * spacing + 0.5 - center_y;
+			double across = x * dx + y * dy;
+			double along = -x * dy + y * dx;
+			min_across = Math.min(min_across, across);
+			max_across = Math.max(max_across, across);
+			min_along = Math.min(min_along, along);
+			max_along = Math.max(max_along, along);
+		}
+		// (the cells themselves have a size, too)
+		float width = (float) (max_across - min_across + cell_width);
+		float height = (float) (max_along - min_along + spacing);
+
+		return new BarcodeOrientation(angle, (float) center_x, (float) center_y, width, height, (float) getCoherence(sxx, syy, sxy));
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the greyscale values of a row, without creating the RGB arrays of getPath()
+	 *  for the devices that provide greyscale values directly.
+	 *
+	 *  @return the number of values.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static int readRow(Device device, int y, int w, int[] grey, byte[] row) {
+		if (device instanceof DecodeSession) {
+			return ((DecodeSession) device).getGreyPath(0, y, w - 1, y, grey);
+		}
+		if (device instanceof ImageDevice) {
+			((ImageDevice) device).getGreyRow(y, row, 0);
+			for (int x = 0; x < w; x++) grey[x] = row[x] & 0xFF;
+			return w;
+		}
+		int[][] path = device.getPath(0, y, w - 1, y, w);
+		for (int x = 0; x < path.length; x++) grey[x] = Luminance.getGrey(path[x][0], path[x][1], path[x][2]);
+		return path.length;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the dominant gradient direction of a structure tensor (0..PI). */
+	//---------------------------------------------------------------------------------------
+	private static double getAngle(double jxx, double jyy, double jxy) {
+		double angle = 0.5 * Math.atan2(2 * jxy, jxx - jyy);
+		return (angle < 0) ? angle + Math.PI : angle;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the coherence of a structure tensor: (l1 - l2) / (l1 + l2) of its eigenvalues. */
+	//---------------------------------------------------------------------------------------
+	private static double getCoherence(double jxx, double jyy, double jxy) {
+		double energy = jxx + jyy;
+		if (energy <= 0) return 0;
+		return Math.sqrt((jxx - jyy) * (jxx - jyy) + 4 * jxy * jxy) / energy;
+	}
+
+	private static int getBin(double angle) {
+		return Math.min(ANGLE_BINS - 1, (int) (angle * ANGLE_BINS / Math.PI));
+	}
+
+	private static double getCellX(int cell, int columns, int cell_width, int w) {
+		int c = cell % columns;
+		int end = (c == columns - 1) ? w - 1 : (c + 1) * cell_width;
+		return (c * cell_width + end) * 0.5;
+	}
+
+	public String toString() {
+		return amount_rows + " rows, min. gradient " + min_gradient + ", " + amount_scanlines + " scanlines";
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public int getAmountRows() {
+		return amount_rows;
+	}
+
+	public int getMinGradient() {
+		return min_gradient;
+	}
+
+	public int getAmountScanlines() {
+		return amount_scanlines;
+	}
+
+}
@@ -0,0 +1,332 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class decides cheaply whether an image may contain an EAN13 barcode, so that
+ *  the full recognition can be skipped for images without one.
+ *  <p>
+ *  A few rows are sampled, and the edges between bars and spaces are located at the 
+ *  steepest steps between the local minima and maxima of the grey values. An EAN13 
+ *  code consists of 59 alternating bars and spaces, 95 modules wide, where every bar
+ *  and space is 1 to 4 modules wide and the guards consist of single modules. For 
+ *  every sequence of 59 consecutive runs, the module width is estimated from the 
+ *  total length of the runs and a histogram of the run lengths in modules is built.
+ *  Runs outside of 1..4 modules and guard runs that are wider than one module are
+ *  counted as outliers. If a sequence with at most max_outlier_runs outliers and 
+ *  enough runs of one and of several modules is found in any row, the image may 
+ *  contain a barcode.
+ *  <p>
+ *  The false negative rate is tuned with the number of rows, the min. contrast and
+ *  the number of tolerated outliers: more rows, less contrast and more outliers let
+ *  fewer barcodes slip through, but reject fewer empty images. 
+ *  <p>
+ *  The sampled rows are horizontal, so they miss the bars of codes that are rotated 
+ *  by more than about 30 degrees. A decoder with an OrientationEstimator therefore 
+ *  also passes the scanlines across the estimated bars, which are checked as well.
+ *  <p>
+ *  Like the BarcodeDecoder, a detector can be used by several threads at the same time.
+ *  It counts the checked and the rejected images.
+ *  
+ *  @see BarcodeDecoder#BarcodeDecoder(DecodeListener, boolean, PresenceDetector)
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class PresenceDetector {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	/** Samples 16 rows, needs a contrast of 24 grey levels and tolerates 10 outliers. */
+	public static final PresenceDetector DEFAULT = new PresenceDetector(16, 24, 10);
+
+	// the number of bars and spaces of an EAN13 code, and its width in modules:
+	private static final int CODE_RUNS = 59;
+	private static final int CODE_MODULES = 95;
+
+	// an EAN13 code has at least 23 runs of one module (11 in the guards, one per digit)
+	// and at least 12 wider runs (one per digit). Some are allowed to be off by one module:
+	private static final int MIN_SINGLE_MODULE_RUNS = 18;
+	private static final int MIN_WIDE_RUNS = 8;
+
+	// the hysteresis is at least this multiple of the median difference of neighbouring pixels:
+	private static final int NOISE_FACTOR = 3;
+
+	// narrower codes can't be decoded anyway, and random noise looks like them:
+	private static final int MIN_CODE_WIDTH = CODE_MODULES * 5 / 4;
+
+	private final int amount_rows;         // the number of sampled rows
+	private final int min_contrast;        // the min. difference between black and white
+	private final int max_outlier_runs;    // the number of tolerated runs outside 1..4 modules
+	private final ScanPlan rows;
+
+	private final LongAdder checked_images = new LongAdder();
+	private final LongAdder rejected_images = new LongAdder();
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** @param amount_rows the number of rows that are sampled.
+	 *  @param min_contrast the min. difference between the darkest and the brightest 
+	 *         pixel of a row (0..255) for the row to be checked at all.
+	 *  @param max_outlier_runs the number of runs of a barcode candidate that may be 
+	 *         shorter than half a module or longer than 4.5 modules, or that may be 
+	 *         wider than one module in a guard.
+	 */
+	//---------------------------------------------------------------------------------------
+	public PresenceDetector(int amount_rows, int min_contrast, int max_outlier_runs) {
+		if (amount_rows <= 0) throw new IllegalArgumentException("amount_rows must be positive: " + amount_rows);
+		if ((min_contrast < 0) || (min_contrast > 255)) throw new IllegalArgumentException("min_contrast must be between 0 and 255: " + min_contrast);
+		if ((max_outlier_runs < 0) || (max_outlier_runs >= CODE_RUNS)) throw new IllegalArgumentException("invalid max_outlier_runs: " + max_outlier_runs);
+		this.amount_rows = amount_rows;
+		this.min_contrast = min_contrast;
+		this.max_outlier_runs = max_outlier_runs;
+		this.rows = new ScanPlan(amount_rows, 0, 0f, 0.1f, 1f, 0.9f);
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Checks whether the image of the given device may contain a barcode.
+	 *  
+	 *  @param device provides access to the image.
+	 *  
+	 *  @return false if the image surely contains no barcode, true otherwise.
+	 */
+	//---------------------------------------------------------------------------------------
+	public boolean mayContainBarcode(Device device) {
+		return mayContainBarcode(device, new int[0][]);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Checks whether the image of the given device may contain a barcode, along the 
+	 *  sampled rows and along the given scanlines.
+	 *  
+	 *  @param device provides access to the image.
+	 *  @param scanlines x1, y1, x2, y2 of additional scanlines, e.g. those across the 
+	 *         bars estimated by an OrientationEstimator.
+	 *  
+	 *  @return false if the image surely contains no barcode, true otherwise.
+	 */
+	//---------------------------------------------------------------------------------------
+	public boolean mayContainBarcode(Device device, int[][] scanlines) {
+		int w = device.getImageWidth();
+		int h = device.getImageHeight();
+		checked_images.increment();
+
+		if ((w >= CODE_RUNS) && containsCode(device, rows.getScanlines(w, h))) return true;
+		if (containsCode(device, scanlines)) return true;
+
+		rejected_images.increment();
+		return false;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns true if a sequence of runs that fits an EAN13 code is found along one of
+	 *  the given scanlines. */
+	//---------------------------------------------------------------------------------------
+	private boolean containsCode(Device device, int[][] lines) {
+		int w = device.getImageWidth();
+		int[] grey = new int[0];
+		int[] differences = new int[256];
+		int[] runs = new int[0];
+		for (int i = 0; i < lines.length; i++) {
+			int[][] path = device.getPath(lines[i][0], lines[i][1], lines[i][2], lines[i][3], w);
+			if (path.length < CODE_RUNS) continue;
+			if (grey.length < path.length) {
+				grey = new int[path.length];
+				runs = new int[path.length];
+			}
+			int amount_runs = extractRuns(path, grey, differences, runs);
+			if (containsCodeSequence(runs, amount_runs)) return true;
+		}
+		return false;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Extracts the lengths of the black and white runs along a path.
+	 *  <p>
+	 *  The local minima and maxima of the grey values are tracked with a hysteresis: 
+	 *  an extremum is only accepted when the grey values move back from it by more 
+	 *  than half the min. contrast, and by more than three times the median difference
+	 *  of neighbouring pixels, so that noise doesn't split the runs. 
+	 *  <p>
+	 *  The edge between a minimum and the following maximum (or vice versa) is placed
+	 *  at the steepest step between them, which keeps the run lengths correct for 
+	 *  blurred images.
+	 *  
+	 *  @param path the RGB values along the path.
+	 *  @param grey a buffer for the grey values, at least as long as the path.
+	 *  @param differences a buffer for the histogram of the neighbour differences (256 entries).
+	 *  @param runs the array that receives the run lengths. The first run is always black.
+	 *  
+	 *  @return the number of runs, 0 if the contrast of the path is too low.
+	 */
+	//---------------------------------------------------------------------------------------
+	private int extractRuns(int[][] path, int[] grey, int[] differences, int[] runs) {
+		int w = path.length;
+		int min = 255;
+		int max = 0;
+		for (int x = 0; x < w; x++) {
+			grey[x] = Luminance.getGrey(path[x][0], path[x][1], path[x][2]);
+			if (grey[x] < min) min = grey[x];
+			if (grey[x] > max) max = grey[x];
+		}
+		if (max - min < min_contrast) return 0;
+
+		// estimate the noise from the median difference of neighbouring pixels:
+		Arrays.fill(differences, 0);
+		for (int x = 1; x < w; x++) differences[Math.abs(grey[x] - grey[x - 1])]++;
+		int median = 0;
+		for (int count = differences[0]; count < w / 2; count += differences[++median]);
+
+		int hysteresis = Math.max(min_contrast >> 1, NOISE_FACTOR * median);
+		int amount_runs = 0;
+		int direction = 0;          // +1 = searching a maximum, -1 = searching a minimum
+		int extremum = 0;           // the position of the current extremum
+		int last_extremum = 0;      // the position of the last accepted extremum
+		int last_edge = -1;         // the position of the last edge, -1 if none yet
+
+		for (int x = 1; x <= w; x++) {
+			if (x < w) {
+				int value = grey[x];
+				if (direction == 0) {
+					if (value > grey[0] + hysteresis) direction = 1;
+					else if (value < grey[0] - hysteresis) direction = -1;
+					else continue;
+					extremum = x;
+					continue;
+				}
+				if ((direction > 0) ? (value >= grey[extremum]) : (value <= grey[extremum])) {
+					extremum = x;
+					continue;
+				}
+				if ((direction > 0) ? (value >= grey[extremum] - hysteresis) : (value <= grey[extremum] + hysteresis)) continue;
+			} else if (direction == 0) {
+				break;
+			}
+
+			// the extremum is accepted (at the end of the path without a reversal), 
+			// find the edge before it:
+			if (extremum > last_extremum) {
+				int edge = last_extremum;
+				int steepest = 0;
+				for (int k = last_extremum; k < extremum; k++) {
+					int step = Math.abs(grey[k + 1] - grey[k]);
+					if (step > steepest) {
+						steepest = step;
+						edge = k;
+					}
+				}
+
+				// runs start with the first falling edge, so the first run is black:
+				if (last_edge >= 0) runs[amount_runs++] = edge - last_edge;
+				if ((last_edge >= 0) || (direction < 0)) last_edge = edge;
+			}
+			last_extremum = extremum;
+			direction = -direction;
+			extremum = x;
+		}
+		return amount_runs;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Searches a sequence of 59 runs, starting with a black run, whose lengths fit the
+	 *  structure of an EAN13 code. */
+	//---------------------------------------------------------------------------------------
+	private boolean containsCodeSequence(int[] runs, int amount_runs) {
+		if (amount_runs < CODE_RUNS) return false;
+
+		int total = 0;
+		for (int i = 0; i < CODE_RUNS; i++) total += runs[i];
+
+		// slide a window of 59 runs over the path, starting with a black run:
+		int[] histogram = new int[6];
+		for (int start = 0; start + CODE_RUNS <= amount_runs; start++) {
+			if (((start & 1) == 0) && (total >= MIN_CODE_WIDTH)) {
+				Arrays.fill(histogram, 0);
+				int outliers = 0;
+				for (int i = start; (i < start + CODE_RUNS) && (outliers <= max_outlier_runs); i++) {
+					// the length of the run in modules, rounded: (index 5 = more than 4)
+					int modules = Math.min(5, (runs[i] * CODE_MODULES * 2 + total) / (total * 2));
+					histogram[modules]++;
+					if ((modules == 0) || (modules == 5) || ((modules != 1) && isGuard(i - start))) outliers++;
+				}
+				if ((outliers <= max_outlier_runs) && (histogram[1] >= MIN_SINGLE_MODULE_RUNS) 
+						&& (histogram[2] + histogram[3] + histogram[4] >= MIN_WIDE_RUNS)) return true;
+			}
+			if (start + CODE_RUNS < amount_runs) total += runs[start + CODE_RUNS] - runs[start];
+		}
+		return false;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns true if the run with the given index belongs to the start, middle or end
+	 *  guard of an EAN13 code. These runs are one module wide. */
+	//---------------------------------------------------------------------------------------
+	private static boolean isGuard(int index) {
+		return (index < 3) || ((index >= 27) && (index < 32)) || (index >= CODE_RUNS - 3);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Resets the counters of this detector. */
+	//---------------------------------------------------------------------------------------
+	public void reset() {
+		checked_images.reset();
+		rejected_images.reset();
+	}
+
+	public String toString() {
+		return "checked " + getCheckedImages() + " images, rejected " + getRejectedImages();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public int getAmountRows() {
+		return amount_rows;
+	}
+
+	public int getMinContrast() {
+		return min_contrast;
+	}
+
+	public int getMaxOutlierRuns() {
+		return max_outlier_runs;
+	}
+
+	public long getCheckedImages() {
+		return checked_images.sum();
+	}
+
+	public long getRejectedImages() {
+		return rejected_images.sum();
+	}
+
+}
@@ -0,0 +1,214 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class represents an image device whose rows arrive one after another, for 
+ *  example while the image is read from a slow stream or received over a network.
+ *  <p>
+ *  A producer adds the rows in the order in which they are stored in a bitmap file 
+ *  (24 bit BGR values), while the BarcodeDecoder already scans the rows that have 
+ *  arrived. As soon as the decoder is confident about its result, it stops the 
+ *  device, and the producer can stop reading the rest of the image.
+ *  <p>
+ *  Usage:<br>
+ *  ProgressiveDevice device = new ProgressiveDevice(width, height);<br>
+ *  (producer thread:) device.readRows(input_stream);<br>
+ *  (decoder thread:) DecodeResult result = decoder.decode(device, profile, 3);<br>
+ *  
+ *  @see BarcodeDecoder#decode(ProgressiveDevice, DecoderProfile, int)
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class ProgressiveDevice implements Device {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+	private final byte[] pixel_data;     // the image in the bmp format, filled row by row
+	private final ImageDevice image;     // provides the paths on the pixel data
+	private final int image_width;
+	private final int image_height;
+	private final int row_size;          // the size of a row including the padding
+
+	private int arrived_rows = 0;        // guarded by this
+	private boolean finished = false;    // true, if no more rows will arrive
+	private boolean stopped = false;     // true, if the decoder doesn't need more rows
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** @param width the width of the image.
+	 *  @param height the height of the image.
+	 */
+	//---------------------------------------------------------------------------------------
+	public ProgressiveDevice(int width, int height) {
+		if ((width <= 0) || (height <= 0)) throw new IllegalArgumentException("invalid image size: " + width + "x" + height);
+		this.image_width = width;
+		this.image_height = height;
+		this.row_size = (width * 3 + 3) & ~3;
+		this.pixel_data = new byte[54 + row_size * height];
+		this.image = new ImageDevice(pixel_data, width, height);
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Performs a recognition run with the default decoder, which stops the device as 
+	 *  soon as three scanlines agree on a valid code. */
+	//---------------------------------------------------------------------------------------
+	public Barcode recognize() {
+		return BarcodeDecoder.DEFAULT.decode(this, DecoderProfile.BALANCED, 3).getBarcode();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Adds the next row of the image.
+	 *  
+	 *  @param data contains the BGR values of the row.
+	 *  @param offset the position of the row in the data array.
+	 *  
+	 *  @throws IllegalStateException if all rows have already been added.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void addRow(byte[] data, int offset) {
+		int y;
+		synchronized (this) {
+			if (finished || (arrived_rows == image_height)) throw new IllegalStateException("all rows have been added");
+			y = arrived_rows;
+		}
+		System.arraycopy(data, offset, pixel_data, 54 + y * row_size, image_width * 3);
+		synchronized (this) {
+			arrived_rows++;
+			if (arrived_rows == image_height) finished = true;
+			notifyAll();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the rows of the image from the given stream, in the format of the pixel data
+	 *  of a 24 bit bitmap file (rows padded to four bytes), until all rows have been read
+	 *  or the device has been stopped. The stream is not closed.
+	 *  
+	 *  @param in the stream, positioned at the start of the pixel data.
+	 *  
+	 *  @return the number of rows that have been read.
+	 *  
+	 *  @throws IOException if the stream can't be read or ends too early.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int readRows(InputStream in) throws IOException {
+		byte[] row = new byte[row_size];
+		int rows = 0;
+		try {
+			while ((rows < image_height) && !isStopped()) {
+				int offset = 0;
+				while (offset < row_size) {
+					int read = in.read(row, offset, row_size - offset);
+					if (read < 0) throw new EOFException("the image data ends after " + rows + " rows");
+					offset += read;
+				}
+				addRow(row, 0);
+				rows++;
+			}
+		} finally {
+			finish();
+		}
+		return rows;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Signals that no more rows will arrive, for example because the stream has ended. */
+	//---------------------------------------------------------------------------------------
+	public synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Signals that the decoder doesn't need any more rows. */
+	//---------------------------------------------------------------------------------------
+	public synchronized void stop() {
+		stopped = true;
+		notifyAll();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Waits until the given number of rows has arrived, or no more rows will arrive.
+	 *  
+	 *  @param rows the number of rows that is needed.
+	 *  
+	 *  @return the number of rows that have arrived.
+	 *  
+	 *  @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	//---------------------------------------------------------------------------------------
+	public synchronized int awaitRows(int rows) throws InterruptedException {
+		while ((arrived_rows < rows) && !finished && !stopped) wait();
+		return arrived_rows;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Extracts the color values along a path. The path may only cross rows that have 
+	 *  already arrived.
+	 *  
+	 *  @see ImageDevice#getPath(int, int, int, int, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public int[][] getPath(int x1, int y1, int x2, int y2, int w) {
+		return image.getPath(x1, y1, x2, y2, w);
+	}
+
+	public synchronized int getArrivedRows() {
+		return arrived_rows;
+	}
+
+	public synchronized boolean isFinished() {
+		return finished;
+	}
+
+	public synchronized boolean isStopped() {
+		return stopped;
+	}
+
+	public int getImageWidth() {
+		return image_width;
+	}
+
+	public int getImageHeight() {
+		return image_height;
+	}
+
+	public boolean isBilinearSampling() {
+		return image.isBilinearSampling();
+	}
+
+	public void setBilinearSampling(boolean bilinear_sampling) {
+		image.setBilinearSampling(bilinear_sampling);
+	}
+
+}
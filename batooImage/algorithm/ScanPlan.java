@@ -0,0 +1,163 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class specifies the scanlines along which the BarcodeDecoder searches for a barcode.
+ *  <p>
+ *  All scanlines are horizontal. The extent specifies the part of the image that is 
+ *  covered, as fractions of the image width and height (0..1). The scanlines are either
+ *  distributed evenly over the height of the extent, or, if a spacing is given, placed 
+ *  that many pixels apart around the vertical center of the extent.
+ *  <p>
+ *  More scanlines increase the chance to recognize a damaged or blurry barcode, 
+ *  fewer scanlines make the recognition faster.
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class ScanPlan {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	/** 100 scanlines distributed over the whole image. */
+	public static final ScanPlan DEFAULT = new ScanPlan(100);
+
+	private final int amount_scanlines;     // the number of scanlines
+	private final int spacing;              // the distance between scanlines in pixels, 0 = even distribution
+	private final float left, top, right, bottom;  // the covered part of the image (0..1)
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Creates a plan with the given number of scanlines, distributed evenly over the 
+	 *  whole image. 
+	 *  
+	 *  @param amount_scanlines the number of scanlines.
+	 */
+	//---------------------------------------------------------------------------------------
+	public ScanPlan(int amount_scanlines) {
+		this(amount_scanlines, 0, 0f, 0f, 1f, 1f);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @param amount_scanlines the number of scanlines.
+	 *  @param spacing the distance between two scanlines in pixels, or 0 if the scanlines 
+	 *         should be distributed evenly over the height of the extent.
+	 *  @param left left border of the covered part of the image (0..1)
+	 *  @param top upper border of the covered part of the image (0..1)
+	 *  @param right right border of the covered part of the image (0..1)
+	 *  @param bottom lower border of the covered part of the image (0..1)
+	 */
+	//---------------------------------------------------------------------------------------
+	public ScanPlan(int amount_scanlines, int spacing, float left, float top, float right, float bottom) {
+		if (amount_scanlines <= 0) throw new IllegalArgumentException("amount_scanlines must be positive: " + amount_scanlines);
+		if (spacing < 0) throw new IllegalArgumentException("spacing must not be negative: " + spacing);
+		if ((left < 0) || (top < 0) || (right > 1) || (bottom > 1) || (left >= right) || (top >= bottom)) {
+			throw new IllegalArgumentException("invalid extent: " + left + ", " + top + ", " + right + ", " + bottom);
+		}
+		this.amount_scanlines = amount_scanlines;
+		this.spacing = spacing;
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the position of each scanline in an image of the given size.
+	 *  
+	 *  @param w the width of the image.
+	 *  @param h the height of the image.
+	 *  
+	 *  @return an array with one entry per scanline, containing x1, y1, x2 and y2.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int[][] getScanlines(int w, int h) {
+
+		int x1 = (int) (left * (w - 1));
+		int x2 = (int) (right * (w - 1));
+		int y_start = (int) (top * h);
+		int y_end = (int) (bottom * h);
+		int extent_h = y_end - y_start;
+
+		int[][] lines = new int[amount_scanlines][4];
+		int y;
+		int step = extent_h / amount_scanlines;
+		int spaced_start = y_start + ((extent_h - spacing * (amount_scanlines - 1)) >> 1);
+
+		for (int i = 0; i < amount_scanlines; i++) {
+			if (spacing > 0) y = spaced_start + spacing * i;
+			else if (step > 0) y = y_start + step * i;
+			else y = y_start + (i * extent_h) / amount_scanlines;
+
+			// keep the scanline inside the image:
+			if (y < 0) y = 0;
+			if (y > h - 1) y = h - 1;
+
+			lines[i][0] = x1;
+			lines[i][1] = y;
+			lines[i][2] = x2;
+			lines[i][3] = y;
+		}
+		return lines;
+	}
+
+	public String toString() {
+		return amount_scanlines + " scanlines, spacing " + spacing + ", extent " + left + ", " + top + ", " + right + ", " + bottom;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public int getAmountScanlines() {
+		return amount_scanlines;
+	}
+
+	public int getSpacing() {
+		return spacing;
+	}
+
+	public float getLeft() {
+		return left;
+	}
+
+	public float getTop() {
+		return top;
+	}
+
+	public float getRight() {
+		return right;
+	}
+
+	public float getBottom() {
+		return bottom;
+	}
+
+}
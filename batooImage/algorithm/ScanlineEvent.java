@@ -0,0 +1,88 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.algorithm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  A Java Flight Recorder event for the recognition along one scanline, from the 
+ *  sampling of its greyscale values to the matching of its digits. Only scanlines that 
+ *  take longer than the threshold are recorded. (1 ms by default, see build/batoo.jfc)
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+@Name("batooImage.Scanline")
+@Label("Barcode Scanline")
+@Category("Batoo Image")
+@Description("The recognition along one scanline")
+@Threshold("1 ms")
+@StackTrace(false)
+class ScanlineEvent extends Event {
+
+	@Label("Image Width")
+	int imageWidth;
+
+	@Label("Image Height")
+	int imageHeight;
+
+	@Label("Index")
+	@Description("The index of the scanline within the recognition run")
+	int index;
+
+	@Label("X1")
+	int x1;
+
+	@Label("Y1")
+	int y1;
+
+	@Label("X2")
+	int x2;
+
+	@Label("Y2")
+	int y2;
+
+	@Label("Path Length")
+	@Description("The number of pixels along the scanline")
+	int pathLength;
+
+	@Label("Field Count")
+	@Description("The number of black and white fields along the scanline")
+	int fieldCount;
+
+	@Label("Recognized")
+	@Description("At least one digit has been recognized")
+	boolean recognized;
+
+	@Label("Valid")
+	@Description("A code with a correct checksum has been recognized")
+	boolean valid;
+
+	@Label("Reused")
+	@Description("The bars and spaces match those of an earlier valid scanline, whose code has been reused")
+	boolean reused;
+
+}
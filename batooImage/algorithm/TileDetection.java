@@ -0,0 +1,124 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.algorithm;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  A barcode found by the TiledDecoder, with its position in the whole image. If the 
+ *  code has been found in several overlapping tiles, these results are combined into
+ *  one detection.
+ *
+ *  @see TiledDecoder#decode(TileSource, int)
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class TileDetection {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private final Barcode barcode;
+	private int x1, y1, x2, y2;              // the bounding box of the code (inclusive)
+	private int tiles;                       // the number of tiles in which the code has been found
+	private int agreeing_scanlines;          // the number of scanlines that agree with the code, in all tiles
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Creates the detection of a code in a single tile.
+	 *
+	 *  @param barcode the recognized code.
+	 *  @param x1, y1, x2, y2 the bounding box of the code in the whole image (inclusive).
+	 *  @param agreeing_scanlines the number of scanlines that agree with the code.
+	 */
+	//---------------------------------------------------------------------------------------
+	public TileDetection(Barcode barcode, int x1, int y1, int x2, int y2, int agreeing_scanlines) {
+		this.barcode = barcode;
+		this.x1 = x1;
+		this.y1 = y1;
+		this.x2 = x2;
+		this.y2 = y2;
+		this.tiles = 1;
+		this.agreeing_scanlines = agreeing_scanlines;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** @return true, if the given detection has the same code and its bounding box 
+	 *          intersects the bounding box of this detection. */
+	//---------------------------------------------------------------------------------------
+	public boolean isSameCode(TileDetection other) {
+		return barcode.toString().equals(other.barcode.toString()) 
+			&& (x1 <= other.x2) && (other.x1 <= x2) && (y1 <= other.y2) && (other.y1 <= y2);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Adds the given detection of the same code to this one. */
+	//---------------------------------------------------------------------------------------
+	void merge(TileDetection other) {
+		x1 = Math.min(x1, other.x1);
+		y1 = Math.min(y1, other.y1);
+		x2 = Math.max(x2, other.x2);
+		y2 = Math.max(y2, other.y2);
+		tiles += other.tiles;
+		agreeing_scanlines += other.agreeing_scanlines;
+	}
+
+	public String toString() {
+		return barcode + " at " + x1 + "/" + y1 + " - " + x2 + "/" + y2 + " (tiles: " + tiles + ", agreeing scanlines: " + agreeing_scanlines + ")";
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public Barcode getBarcode() {
+		return barcode;
+	}
+
+	public int getX1() {
+		return x1;
+	}
+
+	public int getY1() {
+		return y1;
+	}
+
+	public int getX2() {
+		return x2;
+	}
+
+	public int getY2() {
+		return y2;
+	}
+
+	public int getTiles() {
+		return tiles;
+	}
+
+	public int getAgreeingScanlines() {
+		return agreeing_scanlines;
+	}
+
+}
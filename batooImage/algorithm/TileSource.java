@@ -0,0 +1,62 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.algorithm;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  An image that is read in tiles, e.g. from a file that is too large to be held in
+ *  memory as a whole.
+ *  <p>
+ *  Tiles may be read by several threads at the same time.
+ *
+ *  @see TiledDecoder
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public interface TileSource extends Closeable {
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the width of the whole image. */
+	//---------------------------------------------------------------------------------------
+	public int getImageWidth();
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the height of the whole image. */
+	//---------------------------------------------------------------------------------------
+	public int getImageHeight();
+
+	//---------------------------------------------------------------------------------------
+	/** Reads a part of the image. 
+	 *
+	 *  @param x the left border of the tile.
+	 *  @param y the upper border of the tile.
+	 *  @param width the width of the tile.
+	 *  @param height the height of the tile.
+	 *
+	 *  @return a device containing all rows of the tile, in the coordinates of the tile.
+	 *
+	 *  @throws IOException if the image can't be read.
+	 */
+	//---------------------------------------------------------------------------------------
+	public GreyDevice readTile(int x, int y, int width, int height) throws IOException;
+
+}
@@ -0,0 +1,281 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.algorithm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  Decodes images that are too large to be held in memory, e.g. panoramas of warehouse
+ *  shelves with many barcodes. The image is split into overlapping square tiles, which
+ *  are read from a TileSource and decoded independently by several threads. Each tile
+ *  is released as soon as it has been decoded, so at most one tile per thread is held in
+ *  memory at the same time.
+ *  <p>
+ *  The decoder recognizes one barcode per tile. The overlap should therefore be at least
+ *  the size of the largest barcode, so that every barcode lies completely within some
+ *  tile, and the tiles should be small enough to contain only one barcode each. Codes
+ *  that have been found in several overlapping tiles are combined into one detection.
+ *
+ *  @see TileSource
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class TiledDecoder {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	/** The smallest supported tile size. */
+	public static final int MIN_TILE_SIZE = 64;
+
+	// the margin around a located code, relative to its width and in pixels:
+	private static final double QUIET_ZONE = 0.15;
+	private static final int MIN_MARGIN = 16;
+
+	private final BarcodeDecoder decoder;
+	private final DecoderProfile profile;
+	private final OrientationEstimator orientation_estimator;  // locates the code within a tile
+	private final int tile_size;
+	private final int overlap;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Creates a tiled decoder.
+	 *
+	 *  @param decoder decodes the tiles.
+	 *  @param profile the profile used for each tile.
+	 *  @param tile_size the width and height of the tiles in pixels.
+	 *  @param overlap the number of pixels that adjacent tiles have in common.
+	 */
+	//---------------------------------------------------------------------------------------
+	public TiledDecoder(BarcodeDecoder decoder, DecoderProfile profile, int tile_size, int overlap) {
+		if (tile_size < MIN_TILE_SIZE) throw new IllegalArgumentException("tile_size must be at least " + MIN_TILE_SIZE + ": " + tile_size);
+		if ((overlap < 0) || (overlap >= tile_size)) throw new IllegalArgumentException("overlap must be between 0 and tile_size - 1: " + overlap);
+		this.decoder = decoder;
+		this.profile = profile;
+		this.orientation_estimator = (decoder.getOrientationEstimator() != null) ? decoder.getOrientationEstimator() : OrientationEstimator.DEFAULT;
+		this.tile_size = tile_size;
+		this.overlap = overlap;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes all tiles of the given image.
+	 *
+	 *  @param source provides the tiles of the image.
+	 *  @param threads the number of tiles that are read and decoded at the same time.
+	 *
+	 *  @return the valid codes found in the image, from top to bottom and left to right.
+	 *
+	 *  @throws IOException if a tile can't be read.
+	 */
+	//---------------------------------------------------------------------------------------
+	public List<TileDetection> decode(final TileSource source, int threads) throws IOException {
+		if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+		int[] columns = getTileOrigins(source.getImageWidth());
+		int[] rows = getTileOrigins(source.getImageHeight());
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<TileDetection> detections = new ArrayList<TileDetection>();
+		try {
+			List<Future<TileDetection>> futures = new ArrayList<Future<TileDetection>>();
+			for (int r = 0; r < rows.length; r++) {
+				for (int c = 0; c < columns.length; c++) {
+					final int x = columns[c];
+					final int y = rows[r];
+					final int w = Math.min(tile_size, source.getImageWidth() - x);
+					final int h = Math.min(tile_size, source.getImageHeight() - y);
+					futures.add(executor.submit(new Callable<TileDetection>() {
+						public TileDetection call() throws IOException {
+							return decodeTile(source.readTile(x, y, w, h), x, y);
+						}
+					}));
+				}
+			}
+			for (Future<TileDetection> future : futures) {
+				TileDetection detection = future.get();
+				if (detection != null) detections.add(detection);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding the tiles", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new IOException("Can't decode a tile", cause);
+		} finally {
+			executor.shutdownNow();
+		}
+		return mergeDetections(detections);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the positions of the tiles along one axis. The last tile is aligned to the
+	 *  border of the image, so it may have a larger overlap with its neighbour. */
+	//---------------------------------------------------------------------------------------
+	int[] getTileOrigins(int length) {
+		if (length <= tile_size) return new int[] { 0 };
+		int step = tile_size - overlap;
+		int amount = (length - tile_size + step - 1) / step + 1;
+		int[] origins = new int[amount];
+		for (int i = 0; i < amount - 1; i++) origins[i] = i * step;
+		origins[amount - 1] = length - tile_size;
+		return origins;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes a single tile and locates the code within it. 
+	 *  <p>
+	 *  If the tile contains parts of several codes, the scanlines of the tile may cross
+	 *  different codes and their digits may be combined into a valid code that doesn't 
+	 *  exist. So the code is located with the orientation estimator, and the area around
+	 *  it is decoded again. Only a code that is confirmed by this area is accepted.
+	 *
+	 *  @return the detection in the coordinates of the whole image, or null if the tile
+	 *          doesn't contain a valid code.
+	 */
+	//---------------------------------------------------------------------------------------
+	private TileDetection decodeTile(GreyDevice tile, int tile_x, int tile_y) {
+		DecodeResult result = decoder.decode(tile, profile);
+		if (!result.isValid()) return null;
+		int w = tile.getImageWidth();
+		int h = tile.getImageHeight();
+
+		BarcodeOrientation orientation = orientation_estimator.estimate(tile);
+		if (orientation == null) {
+			// the bounding box of the agreeing scanlines, including those that have reused a code:
+			int[][][] hits = { result.getHits(), result.getReusedHits() };
+			int x1 = w - 1;
+			int y1 = h - 1;
+			int x2 = 0;
+			int y2 = 0;
+			for (int k = 0; k < hits.length; k++) {
+				for (int i = 0; i < hits[k].length; i++) {
+					x1 = Math.min(x1, Math.min(hits[k][i][0], hits[k][i][2]));
+					y1 = Math.min(y1, Math.min(hits[k][i][1], hits[k][i][3]));
+					x2 = Math.max(x2, Math.max(hits[k][i][0], hits[k][i][2]));
+					y2 = Math.max(y2, Math.max(hits[k][i][1], hits[k][i][3]));
+				}
+			}
+			return createDetection(result, tile_x, tile_y, x1, y1, x2, y2, w, h);
+		}
+
+		// the axis-aligned bounding box of the code, including its quiet zone:
+		double cos = Math.abs(Math.cos(orientation.getAngle()));
+		double sin = Math.abs(Math.sin(orientation.getAngle()));
+		double margin = Math.max(MIN_MARGIN, QUIET_ZONE * orientation.getWidth());
+		double half_w = (cos * orientation.getWidth() + sin * orientation.getHeight()) / 2 + margin;
+		double half_h = (sin * orientation.getWidth() + cos * orientation.getHeight()) / 2 + margin;
+		int x1 = Math.max(0, (int) Math.floor(orientation.getCenterX() - half_w));
+		int y1 = Math.max(0, (int) Math.floor(orientation.getCenterY() - half_h));
+		int x2 = Math.min(w - 1, (int) Math.ceil(orientation.getCenterX() + half_w));
+		int y2 = Math.min(h - 1, (int) Math.ceil(orientation.getCenterY() + half_h));
+		if ((x2 <= x1) || (y2 <= y1)) return null;
+
+		DecodeResult confirmed = decoder.decode(tile.crop(x1, y1, x2 - x1 + 1, y2 - y1 + 1), profile);
+		if (!confirmed.isValid()) return null;
+		return createDetection(confirmed, tile_x, tile_y, x1, y1, x2, y2, w, h);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates a detection for a box within a tile, clipped to the tile. */
+	//---------------------------------------------------------------------------------------
+	private static TileDetection createDetection(DecodeResult result, int tile_x, int tile_y, int x1, int y1, int x2, int y2, int w, int h) {
+		x1 = Math.max(0, x1);
+		y1 = Math.max(0, y1);
+		x2 = Math.min(w - 1, Math.max(x1, x2));
+		y2 = Math.min(h - 1, Math.max(y1, y2));
+		return new TileDetection(result.getBarcode(), tile_x + x1, tile_y + y1, tile_x + x2, tile_y + y2, result.getAgreeingScanlines());
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Combines the detections of the same code whose bounding boxes intersect, and sorts
+	 *  the remaining detections by their position. */
+	//---------------------------------------------------------------------------------------
+	static List<TileDetection> mergeDetections(List<TileDetection> detections) {
+		List<TileDetection> merged = new ArrayList<TileDetection>();
+		for (TileDetection detection : detections) {
+			// the detection may join several detections that have been separate so far:
+			TileDetection target = null;
+			for (int i = 0; i < merged.size(); i++) {
+				TileDetection other = merged.get(i);
+				if (!other.isSameCode(detection)) continue;
+				if (target == null) {
+					other.merge(detection);
+					target = other;
+				} else {
+					target.merge(other);
+					merged.remove(i--);
+				}
+			}
+			if (target == null) merged.add(detection);
+		}
+		Collections.sort(merged, new Comparator<TileDetection>() {
+			public int compare(TileDetection a, TileDetection b) {
+				if (a.getY1() != b.getY1()) return Integer.compare(a.getY1(), b.getY1());
+				return Integer.compare(a.getX1(), b.getX1());
+			}
+		});
+		return merged;
+	}
+
+	public String toString() {
+		return "TiledDecoder (tile size: " + tile_size + ", overlap: " + overlap + ")";
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public BarcodeDecoder getDecoder() {
+		return decoder;
+	}
+
+	public DecoderProfile getProfile() {
+		return profile;
+	}
+
+	public int getTileSize() {
+		return tile_size;
+	}
+
+	public int getOverlap() {
+		return overlap;
+	}
+
+}
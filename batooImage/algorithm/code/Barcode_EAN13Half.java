@@ -0,0 +1,111 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm.code;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  One half of an EAN13 barcode, recognized along a scanline independently of the
+ *  other half. The left half contains the system code and the digits 1..6, the right
+ *  half the digits 7..12.
+ *  <p>
+ *  The positions of the outer guard and the middle guard are measured in pixels along
+ *  the scanline, from its start point. They allow to combine halves recognized along
+ *  different scanlines that belong to the same barcode.
+ *
+ *  @see Decoder_EAN13#recognizeHalves(int[][], int, batooImage.algorithm.DecoderProfile)
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class Barcode_EAN13Half {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private final boolean left_half;
+	private final int[] numbers = new int[13];   // -1 at the positions of the other half
+	private final float outer_guard;             // the center of the start or end guard
+	private final float middle_guard;            // the center of the middle guard
+	private final float unit_length;             // the width of one module in pixels
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	public Barcode_EAN13Half(boolean left_half, int[] numbers, float outer_guard, float middle_guard, float unit_length) {
+		this.left_half = left_half;
+		for (int i = 0; i < 13; i++) this.numbers[i] = -1;
+		int first = left_half ? 0 : 7;
+		int last = left_half ? 6 : 12;
+		for (int i = first; i <= last; i++) this.numbers[i] = numbers[i];
+		this.outer_guard = outer_guard;
+		this.middle_guard = middle_guard;
+		this.unit_length = unit_length;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** @return true, if all digits of this half have been recognized. (For the left half
+	 *          this includes the system code.) */
+	//---------------------------------------------------------------------------------------
+	public boolean isComplete() {
+		int first = left_half ? 0 : 7;
+		int last = left_half ? 6 : 12;
+		for (int i = first; i <= last; i++) {
+			if (numbers[i] < 0) return false;
+		}
+		return true;
+	}
+
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < 13; i++) {
+			if (numbers[i] >= 0) s.append(numbers[i]); else s.append('?');
+		}
+		return s.toString() + (left_half ? " (left" : " (right") + " half, guards at " + outer_guard + " and " + middle_guard + ")";
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public boolean isLeftHalf() {
+		return left_half;
+	}
+
+	/** @return the 13 digits of the code, with -1 at the positions of the other half. */
+	public int[] getNumbers() {
+		return numbers;
+	}
+
+	public float getOuterGuard() {
+		return outer_guard;
+	}
+
+	public float getMiddleGuard() {
+		return middle_guard;
+	}
+
+	public float getUnitLength() {
+		return unit_length;
+	}
+
+}
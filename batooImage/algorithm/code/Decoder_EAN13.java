@@ -21,11 +21,14 @@
 
 package batooImage.algorithm.code;
 
-import batooImage.algorithm.code.*;
+import batooImage.algorithm.DecoderProfile;
 
 //xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
 /** 
 *  This class is used to recognize and decode EAN13 barcodes. 
+*  <p>
+*  A decoder keeps no state between calls, so one instance can be used by 
+*  several threads at the same time.
 * 
 *  @author Robert Adelmann
 *  @version 1.0 
@@ -37,11 +40,11 @@ public class Decoder_EAN13 {
 	// VARIABLES
 	//---------------------------------------------------------------------------------------
 
-	static int BOTH_TABLES = 0;
-	static int EVEN_TABLE = 1;
-	static int ODD_TABLE = 2;
+	static final int BOTH_TABLES = 0;
+	static final int EVEN_TABLE = 1;
+	static final int ODD_TABLE = 2;
 	
-	static int[][] code_odd = { { 30, 20, 10, 10 }, 
+	private static final int[][] code_odd = { { 30, 20, 10, 10 }, 
 		                        { 20, 20, 20, 10 }, 
 		                        { 20, 10, 20, 20 }, 
 		                        { 10, 40, 10, 10 }, 
@@ -52,7 +55,7 @@ public class Decoder_EAN13 {
 		                        { 10, 20, 10, 30 }, 
 		                        { 30, 10, 10, 20 } };
 
-	static int[][] code_even = { { 10, 10, 20, 30 }, 
+	private static final int[][] code_even = { { 10, 10, 20, 30 }, 
 		                         { 10, 20, 20, 20 }, 
 		                         { 20, 20, 10, 20 }, 
 		                         { 10, 10, 40, 10 }, 
@@ -64,7 +67,7 @@ public class Decoder_EAN13 {
 		                         { 20, 10, 10, 30 } };
 
 
-	static boolean parity_pattern_list[][] = { { false, false, false, false, false, false }, 
+	private static final boolean parity_pattern_list[][] = { { false, false, false, false, false, false }, 
 		                                       { false, false, true, false, true, true }, 
 		                                       { false, false, true, true, false, true }, 
 		                                       { false, false, true, true, true, false }, 
@@ -75,11 +78,37 @@ public class Decoder_EAN13 {
 		                                       { false, true, false, true, true, false }, 
 		                                       { false, true, true, false, true, false } };
 
-	static boolean debug = false;
+	private static final boolean debug = false;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	public Decoder_EAN13() {
+	}
 
 	//---------------------------------------------------------------------------------------
 	// METHODS
 	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the widths of the four bars and spaces of a digit, in tenths of a module. 
+	 *  The array is a copy, the code tables can't be changed from outside.
+	 *  
+	 *  @param digit the digit (0..9).
+	 *  @param even true for the even code table, false for the odd one.
+	 */
+	//---------------------------------------------------------------------------------------
+	static int[] getDigitWidths(int digit, boolean even) {
+		return (even ? code_even[digit] : code_odd[digit]).clone();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return true, if the digit at the given position (0..5) of the left half of a code
+	 *          with the given system code uses the even code table. */
+	//---------------------------------------------------------------------------------------
+	static boolean isEvenParity(int system_code, int position) {
+		return parity_pattern_list[system_code][position];
+	}
   
 	//---------------------------------------------------------------------------------------
 	/** This method is called from the ScanlineControl class, if a recognition run should be 
@@ -97,12 +126,56 @@ public class Decoder_EAN13 {
 	 *   @author Robert Adelmann 
 	 */
 	//---------------------------------------------------------------------------------------
-	public static Barcode_EAN13 recognize(int[][] fields) {
+	public Barcode_EAN13 recognize(int[][] fields) {
+		return recognize(fields, 1);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Recognizes a barcode in fields whose lengths are given in fractions of a pixel.
+	 *  This is used for field lengths that have been measured with sub-pixel accuracy.
+	 *  
+	 *  @param fields contains information about a series of alternating black and white 
+	 *                fields, like in recognize(int[][]). 
+	 *  @param scale specifies the unit of the field lengths: the length of 
+	 *               a field in pixels is fields[i][1] / scale.
+	 *
+	 *  @return A barcode_EAN13 object containing the recogized barcode.
+	 */
+	//---------------------------------------------------------------------------------------
+	public Barcode_EAN13 recognize(int[][] fields, int scale) {
+		return recognize(fields, scale, DecoderProfile.BALANCED);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Recognizes a barcode in the given fields, using the parameters of the given profile.
+	 *  
+	 *  @param fields contains information about a series of alternating black and white 
+	 *                fields, like in recognize(int[][]). 
+	 *  @param scale the number of length units per pixel used in the fields array.
+	 *  @param profile contains the parameters for the start sentinel detection and
+	 *                 the digit matching.
+	 *
+	 *  @return A barcode_EAN13 object containing the recogized barcode.
+	 */
+	//---------------------------------------------------------------------------------------
+	public Barcode_EAN13 recognize(int[][] fields, int scale, DecoderProfile profile) {
+		MatchEvent event = new MatchEvent();
+		event.begin();
 
 		// try to extract the encoded information from the field series:
-		int numbers[] = decode(fields, 0, fields.length);
+		int numbers[] = decode(fields, 0, fields.length, scale, profile);
 		Barcode_EAN13 barcode = new Barcode_EAN13(numbers);
 
+		event.end();
+		if (event.shouldCommit()) {
+			event.fieldCount = fields.length;
+			for (int i = 0; i < 13; i++) {
+				if (barcode.getNumber(i) >= 0) event.recognizedDigits++;
+			}
+			event.valid = barcode.isValid();
+			event.commit();
+		}
+
 		// return the results:
 		return barcode;
 
@@ -121,6 +194,8 @@ public class Decoder_EAN13 {
 	 *                 started.              
 	 *  @param end_i represents the field index at which the search for a barcode should be 
 	 *               stopped.
+	 *  @param scale the number of length units per pixel used in the fields array.
+	 *  @param profile contains the parameters of the recognition.
 	 *                                
 	 *  @return If a EAN 13 barcode (13 digits) is found, its digits are returned. 
 	 *          If not, at least the digits of it that could be recognized will be returned. 
@@ -129,26 +204,23 @@ public class Decoder_EAN13 {
 	 *  @author Robert Adelmann 
 	 */
 	//---------------------------------------------------------------------------------------
-	private static int[] decode(int[][] fields, int start_i, int end_i) {
+	private int[] decode(int[][] fields, int start_i, int end_i, int scale, DecoderProfile profile) {
 
       // determine the length of the path in pixels
 		int length = 0;
 		for (int i = 0; i < fields.length; i++) length = length + fields[i][1];
+		length = length / scale;
 		
       // set the parameters accordingly:
-		int max_start_sentry_bar_differences;
-		int max_unit_length;
-		int min_unit_length;
-		
-		if (length <= 800) {
-		   max_start_sentry_bar_differences = 6;
-		   max_unit_length = 10;
-		   min_unit_length = 1;
-		} else {
-		   max_start_sentry_bar_differences = 30;
-		   max_unit_length = 50;
-		   min_unit_length = 1;
-		}
+		int max_start_sentry_bar_differences = profile.getMaxStartSentryBarDifferences(length);
+		int max_unit_length = profile.getMaxUnitLength(length);
+		int min_unit_length = profile.getMinUnitLength(length);
+		int max_difference_for_acceptance = profile.getMaxDifferenceForAcceptance();
+
+		// convert the pixel values into the unit of the field lengths:
+		max_start_sentry_bar_differences = max_start_sentry_bar_differences * scale;
+		max_unit_length = max_unit_length * scale;
+		min_unit_length = min_unit_length * scale;
 		
 		// consistency checks:
 		if (fields.length <= 0) return null;
@@ -224,7 +296,7 @@ public class Decoder_EAN13 {
 			current_number_field[j][0] = fields[left_numbers_i + j][0];
 			current_number_field[j][1] = fields[left_numbers_i + j][1];
 		}
-		matchMakerResult = recognizeNumber(current_number_field, BOTH_TABLES);
+		matchMakerResult = recognizeNumber(current_number_field, BOTH_TABLES, max_difference_for_acceptance);
 		
 		
 		
@@ -242,7 +314,7 @@ public class Decoder_EAN13 {
 					current_number_field[j][0] = fields[i + j][0];
 					current_number_field[j][1] = fields[i + j][1];
 				}
-				matchMakerResult = recognizeNumber(current_number_field, EVEN_TABLE);
+				matchMakerResult = recognizeNumber(current_number_field, EVEN_TABLE, max_difference_for_acceptance);
 				numbers[counter] = matchMakerResult.getDigit();
 				counter--;
 			}
@@ -257,7 +329,7 @@ public class Decoder_EAN13 {
 					current_number_field[j][0] = fields[i + j][0];
 					current_number_field[j][1] = fields[i + j][1];
 				}
-				matchMakerResult = recognizeNumber(current_number_field, BOTH_TABLES);
+				matchMakerResult = recognizeNumber(current_number_field, BOTH_TABLES, max_difference_for_acceptance);
 				numbers[counter] = matchMakerResult.getDigit();
 				parity_pattern[counter-1] = !matchMakerResult.isEven();
 				counter--;
@@ -285,7 +357,7 @@ public class Decoder_EAN13 {
 					current_number_field[j][0] = fields[i + j][0];
 					current_number_field[j][1] = fields[i + j][1];
 				}
-				matchMakerResult = recognizeNumber(current_number_field, BOTH_TABLES);
+				matchMakerResult = recognizeNumber(current_number_field, BOTH_TABLES, max_difference_for_acceptance);
 				numbers[counter] = matchMakerResult.getDigit();
 				parity_pattern[counter-1] = matchMakerResult.isEven();
 				counter++;
@@ -302,7 +374,7 @@ public class Decoder_EAN13 {
 					current_number_field[j][0] = fields[i + j][0];
 					current_number_field[j][1] = fields[i + j][1];
 				}
-				matchMakerResult = recognizeNumber(current_number_field, ODD_TABLE);
+				matchMakerResult = recognizeNumber(current_number_field, ODD_TABLE, max_difference_for_acceptance);
 				numbers[counter + 7] = matchMakerResult.getDigit();
 				counter++;
 			}
@@ -313,6 +385,178 @@ public class Decoder_EAN13 {
 
 	}
 
+	//---------------------------------------------------------------------------------------
+	/** Recognizes the two halves of an EAN13 barcode independently of each other. 
+	 *  <p>
+	 *  The first half is searched behind the first start sentinel of the path that is 
+	 *  followed by a complete half, the second half in front of the last such sentinel. A half 
+	 *  consists of an outer guard, six digits and the middle guard (32 fields, 50 modules). 
+	 *  It is only returned if the middle guard and all digits have the expected width 
+	 *  and all digits have been recognized, so a half that is disturbed by a reflection 
+	 *  doesn't prevent the other half from being recognized.
+	 *  <p>
+	 *  Each half is either the left or the right half of the code, depending on the 
+	 *  direction in which the barcode is read.
+	 *  
+	 *  @param fields contains information about a series of alternating black and white 
+	 *                fields, like in recognize(int[][]).
+	 *  @param scale the number of length units per pixel used in the fields array.
+	 *  @param profile contains the parameters for the sentinel detection and the digit matching.
+	 *  
+	 *  @return an array with the half behind the start sentinel at index 0 and the half in 
+	 *          front of the end sentinel at index 1. (null for halves that have not been 
+	 *          recognized completely)
+	 */
+	//---------------------------------------------------------------------------------------
+	public Barcode_EAN13Half[] recognizeHalves(int[][] fields, int scale, DecoderProfile profile) {
+
+		Barcode_EAN13Half[] halves = new Barcode_EAN13Half[2];
+		if (fields.length < 34) return halves;
+
+		// determine the length of the path in pixels, and the parameters accordingly:
+		int length = 0;
+		for (int i = 0; i < fields.length; i++) length = length + fields[i][1];
+		length = length / scale;
+		int max_sentinel_differences = profile.getMaxStartSentryBarDifferences(length) * scale;
+		int max_unit_length = profile.getMaxUnitLength(length) * scale;
+		int min_unit_length = profile.getMinUnitLength(length) * scale;
+		int max_difference_for_acceptance = profile.getMaxDifferenceForAcceptance();
+
+		// search the first start sentinel that is followed by a complete half: 
+		// (a small black-white-black serie)
+		for (int i = 0; (i < fields.length - 32) && (halves[0] == null); i++) {
+			if (isSentinel(fields, i, 1, min_unit_length, max_unit_length, max_sentinel_differences)) {
+				halves[0] = decodeHalf(fields, i, true, scale, max_difference_for_acceptance);
+			}
+		}
+
+		// search the last end sentinel that is preceded by a complete half:
+		for (int i = fields.length - 1; (i >= 32) && (halves[1] == null); i--) {
+			if (isSentinel(fields, i, -1, min_unit_length, max_unit_length, max_sentinel_differences)) {
+				halves[1] = decodeHalf(fields, i - 31, false, scale, max_difference_for_acceptance);
+			}
+		}
+
+		return halves;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Checks if a guard of three fields with one module each starts at the given black field.
+	 *  
+	 *  @param direction 1 if the guard continues with the following fields, -1 if it 
+	 *         continues with the preceding fields.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static boolean isSentinel(int[][] fields, int i, int direction, int min_unit_length, int max_unit_length, int max_differences) {
+		if (fields[i][0] != 0) return false;
+		if ((fields[i][1] < min_unit_length) || (fields[i][1] > max_unit_length)) return false;
+		if (Math.abs(fields[i][1] - fields[i + direction][1]) > max_differences) return false;
+		if (Math.abs(fields[i][1] - fields[i + 2 * direction][1]) > max_differences) return false;
+		return fields[i + 3 * direction][1] < fields[i][1] << 3;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes one half of a barcode. 
+	 *  
+	 *  @param fields the black and white fields along the path.
+	 *  @param first_i the index of the first of the 32 fields of the half.
+	 *  @param outer_guard_first true, if the half starts with the outer guard and ends 
+	 *         with the middle guard, false for the reversed order.
+	 *  @param scale the number of length units per pixel used in the fields array.
+	 *  @param max_difference_for_acceptance the max. difference for the digit matching.
+	 *  
+	 *  @return the half, or null if it hasn't been recognized completely.
+	 */
+	//---------------------------------------------------------------------------------------
+	private Barcode_EAN13Half decodeHalf(int[][] fields, int first_i, boolean outer_guard_first, int scale, int max_difference_for_acceptance) {
+
+		int guard_i = outer_guard_first ? first_i : first_i + 29;
+		int middle_i = outer_guard_first ? first_i + 27 : first_i;
+		int digits_i = outer_guard_first ? first_i + 3 : first_i + 5;
+
+		// the position of the first field, and the width of a module (50 modules per half):
+		int start = 0;
+		for (int i = 0; i < first_i; i++) start = start + fields[i][1];
+		int half_length = 0;
+		for (int i = first_i; i < first_i + 32; i++) half_length = half_length + fields[i][1];
+		float unit_length = (float) half_length / 50;
+
+		// the middle guard must be five modules wide, and every digit seven modules:
+		if (!hasWidth(fields, middle_i, 5, 5, unit_length)) return null;
+		for (int k = 0; k < 6; k++) {
+			if (!hasWidth(fields, digits_i + 4 * k, 4, 7, unit_length)) return null;
+		}
+
+		// recognize the digits, in the order of the path:
+		int[] digits = new int[6];
+		boolean[] even = new boolean[6];
+		int[][] current_number_field = new int[4][2];
+		for (int k = 0; k < 6; k++) {
+			for (int j = 0; j < 4; j++) {
+				current_number_field[j][0] = fields[digits_i + 4 * k + j][0];
+				current_number_field[j][1] = fields[digits_i + 4 * k + j][1];
+			}
+			MatchMakerResult matchMakerResult = recognizeNumber(current_number_field, BOTH_TABLES, max_difference_for_acceptance);
+			if (matchMakerResult.getDigit() < 0) return null;
+			digits[k] = matchMakerResult.getDigit();
+			even[k] = matchMakerResult.isEven();
+		}
+
+		// the digit next to the outer guard is always odd, if the code is read from the 
+		// front side: (the first left digit, or the last right digit)
+		int outer_k = outer_guard_first ? 0 : 5;
+		boolean read_from_front = !even[outer_k];
+
+		// a half behind the start sentinel is the left one when read from the front side,
+		// a half in front of the end sentinel the right one:
+		boolean left_half = (outer_guard_first == read_from_front);
+
+		int[] numbers = new int[13];
+		boolean[] parity_pattern = new boolean[6];  // true = even, false = odd
+		for (int k = 0; k < 6; k++) {
+			
+			// the index of the digit in the code, counted from the outer guard:
+			int from_guard = outer_guard_first ? k : 5 - k;
+			if (left_half) {
+				numbers[1 + from_guard] = digits[k];
+				parity_pattern[from_guard] = read_from_front ? even[k] : !even[k];
+			} else {
+				// all right digits have the same parity: odd from the front side, even from the back side
+				if (even[k] == read_from_front) return null;
+				numbers[12 - from_guard] = digits[k];
+			}
+		}
+		if (left_half) {
+			numbers[0] = recognizeSystemCode(parity_pattern).getDigit();
+			if (numbers[0] < 0) return null;
+		}
+
+		// the centers of the guards in pixels along the path:
+		float outer_guard = (float) (start + getOffset(fields, first_i, guard_i) + getOffset(fields, guard_i, guard_i + 3) / 2) / scale;
+		float middle_guard = (float) (start + getOffset(fields, first_i, middle_i) + getOffset(fields, middle_i, middle_i + 5) / 2) / scale;
+
+		return new Barcode_EAN13Half(left_half, numbers, outer_guard, middle_guard, unit_length / scale);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Checks if the given fields are about the given number of modules wide. 
+	 *  (within one and a half modules)
+	 */
+	//---------------------------------------------------------------------------------------
+	private static boolean hasWidth(int[][] fields, int first_i, int amount_fields, int modules, float unit_length) {
+		int width = getOffset(fields, first_i, first_i + amount_fields);
+		return Math.abs(width - modules * unit_length) <= 1.5f * unit_length;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the total length of the fields from_i (inclusive) to to_i (exclusive). */
+	//---------------------------------------------------------------------------------------
+	private static int getOffset(int[][] fields, int from_i, int to_i) {
+		int offset = 0;
+		for (int i = from_i; i < to_i; i++) offset = offset + fields[i][1];
+		return offset;
+	}
+
 	//---------------------------------------------------------------------------------------
 	/** Rounds the given float value. It is used because the Java2 Micro Edition
 	 *  provides no round method.
@@ -349,7 +593,24 @@ public class Decoder_EAN13 {
 	 *  @author Robert Adelmann 
 	 */
 	//---------------------------------------------------------------------------------------
-	public static MatchMakerResult recognizeNumber(int[][] fields, int code_table_to_use) {
+	public MatchMakerResult recognizeNumber(int[][] fields, int code_table_to_use) {
+		return recognizeNumber(fields, code_table_to_use, DecoderProfile.BALANCED.getMaxDifferenceForAcceptance());
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Recognizes the digit that is encoded by the given series of four black and white fields.
+	 * 
+	 *  @param fields contains information about a series of four alternating black and white 
+	 *                fields, like in recognizeNumber(int[][], int).
+	 *  @param code_table_to_use BOTH_TABLES, EVEN_TABLE or ODD_TABLE.
+	 *  @param max_difference_for_acceptance the max. difference between the normed lengths
+	 *                of the fields and the best matching code table entry.
+	 *                   
+	 *  @return the digit encoded by the set of black and white fields as well as the parity of
+	 *              this digit (even or odd). 
+	 */
+	//---------------------------------------------------------------------------------------
+	public MatchMakerResult recognizeNumber(int[][] fields, int code_table_to_use, int max_difference_for_acceptance) {
 
 		// convert the pixel lenghts of the four black&white fields into 
 		// normed values that have together a length of 70;
@@ -367,7 +628,6 @@ public class Decoder_EAN13 {
 		}
 
 		// try to detect the digit that is encoded by the set of four normed bar lenghts:	
-		int max_difference_for_acceptance = 60;
 		int temp;
 
 		
@@ -433,7 +693,7 @@ public class Decoder_EAN13 {
 	 *  @author Robert Adelmann 
 	 */
 	//---------------------------------------------------------------------------------------
-	public static MatchMakerResult recognizeSystemCode(boolean[] parity_pattern) {
+	public MatchMakerResult recognizeSystemCode(boolean[] parity_pattern) {
 
 		// search for a fitting parity pattern:
 		boolean fits = false;
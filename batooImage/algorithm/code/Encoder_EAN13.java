@@ -0,0 +1,129 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm.code;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This class converts an EAN13 code into the sequence of its 95 modules (unit wide bars
+ *  and spaces). It uses the same code tables as the Decoder_EAN13 class.
+ *  <p>
+ *  The left digits start with a space and use the odd or even code table, depending on
+ *  the parity pattern of the system code. The right digits start with a bar and 
+ *  always use the odd code table.
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class Encoder_EAN13 {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	/** The number of modules of an EAN13 barcode, without quiet zones. */
+	public static final int MODULES = 95;
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the modules of the given barcode.
+	 *  
+	 *  @param code a barcode with 13 recognized digits.
+	 *  
+	 *  @return an array with 95 entries, true for a black module and false for a white one.
+	 *  
+	 *  @throws IllegalArgumentException if a digit of the code is missing.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static boolean[] encode(Barcode_EAN13 code) {
+		int[] numbers = code.getNumbers();
+		for (int i = 0; i < 13; i++) {
+			if ((numbers[i] < 0) || (numbers[i] > 9)) throw new IllegalArgumentException("incomplete code: " + code);
+		}
+
+		boolean[] modules = new boolean[MODULES];
+		int pos = 0;
+
+		// start sentinel:
+		pos = addGuard(modules, pos, 3);
+
+		// left numbers:
+		for (int i = 0; i < 6; i++) {
+			boolean even = Decoder_EAN13.isEvenParity(numbers[0], i);
+			pos = addDigit(modules, pos, Decoder_EAN13.getDigitWidths(numbers[i + 1], even), false);
+		}
+
+		// middle guard: (starts with a space)
+		modules[pos + 1] = true;
+		modules[pos + 3] = true;
+		pos = pos + 5;
+
+		// right numbers:
+		for (int i = 7; i < 13; i++) {
+			pos = addDigit(modules, pos, Decoder_EAN13.getDigitWidths(numbers[i], false), true);
+		}
+
+		// end sentinel:
+		addGuard(modules, pos, 3);
+
+		return modules;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Computes the checksum digit for the first 12 digits of an EAN13 code.
+	 *  
+	 *  @param numbers an array with at least 12 digits.
+	 *  
+	 *  @return the 13th digit that makes the code valid.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static int getChecksumDigit(int[] numbers) {
+		int sum1 = numbers[0] + numbers[2] + numbers[4] + numbers[6] + numbers[8] + numbers[10];
+		int sum2 = 3 * (numbers[1] + numbers[3] + numbers[5] + numbers[7] + numbers[9] + numbers[11]);
+		int checksum_digit = 10 - ((sum1 + sum2) % 10);
+		if (checksum_digit == 10) checksum_digit = 0;
+		return checksum_digit;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Adds a guard pattern of alternating bars and spaces, starting with a bar. */
+	//---------------------------------------------------------------------------------------
+	private static int addGuard(boolean[] modules, int pos, int length) {
+		for (int i = 0; i < length; i++) modules[pos + i] = (i % 2 == 0);
+		return pos + length;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Adds the four alternating fields of a digit. The widths are taken from a code 
+	 *  table, so they are given in tenths of a module. */
+	//---------------------------------------------------------------------------------------
+	private static int addDigit(boolean[] modules, int pos, int[] widths, boolean starts_with_bar) {
+		boolean bar = starts_with_bar;
+		for (int j = 0; j < 4; j++) {
+			int width = widths[j] / 10;
+			for (int k = 0; k < width; k++) modules[pos++] = bar;
+			bar = !bar;
+		}
+		return pos;
+	}
+
+}
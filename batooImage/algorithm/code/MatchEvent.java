@@ -0,0 +1,59 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.algorithm.code;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  A Java Flight Recorder event for the matching of the fields of a scanline against 
+ *  the EAN13 code tables. Only matchings that take longer than the threshold are 
+ *  recorded. (1 ms by default, see build/batoo.jfc)
+ *  
+ *  @see Decoder_EAN13#recognize(int[][], int, batooImage.algorithm.DecoderProfile)
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+@Name("batooImage.EAN13Match")
+@Label("EAN13 Match")
+@Category("Batoo Image")
+@Description("The matching of the fields of a scanline against the EAN13 code tables")
+@Threshold("1 ms")
+@StackTrace(false)
+class MatchEvent extends Event {
+
+	@Label("Field Count")
+	@Description("The number of black and white fields")
+	int fieldCount;
+
+	@Label("Recognized Digits")
+	int recognizedDigits;
+
+	@Label("Valid")
+	@Description("A code with a correct checksum has been recognized")
+	boolean valid;
+
+}
@@ -0,0 +1,197 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import batooImage.algorithm.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  Loads uncompressed 24 bit bitmap files, taking the image size from the file header.
+ *  Bitmaps can be loaded completely, row by row from a stream, or in tiles.
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class BitmapFile {
+
+	//---------------------------------------------------------------------------------------
+	/** Loads the given bitmap file.
+	 *  
+	 *  @param file a 24 bit bitmap file without compression.
+	 *  
+	 *  @return an ImageDevice containing the image.
+	 *  
+	 *  @throws IOException if the file can't be read or is not a supported bitmap.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static ImageDevice load(File file) throws IOException {
+		byte[] data = Files.readAllBytes(file.toPath());
+		int[] size = readHeader(data, file.toString());
+		if (data.length < 54 + ((size[0] * 3 + 3) & ~3) * size[1]) {
+			throw new IOException("Bitmap file is truncated: " + file);
+		}
+		return new ImageDevice(data, size[0], size[1]);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the header of a bitmap from the given stream and creates a device for the
+	 *  rows that follow. The rows can then be added with device.readRows(in), while 
+	 *  another thread already decodes them.
+	 *  
+	 *  @param in a stream containing a 24 bit bitmap file without compression.
+	 *  
+	 *  @return a device of the size of the bitmap, without any rows.
+	 *  
+	 *  @throws IOException if the stream can't be read or doesn't contain a supported bitmap.
+	 *  
+	 *  @see BarcodeDecoder#decode(ProgressiveDevice, DecoderProfile, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public static ProgressiveDevice openProgressive(InputStream in) throws IOException {
+		byte[] header = new byte[54];
+		int offset = 0;
+		while (offset < header.length) {
+			int read = in.read(header, offset, header.length - offset);
+			if (read < 0) throw new IOException("Not a bitmap file: the header is truncated");
+			offset += read;
+		}
+		int[] size = readHeader(header, "stream");
+		return new ProgressiveDevice(size[0], size[1]);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Opens the given bitmap file for reading it in tiles. Only the pixels of a tile are 
+	 *  read from the file, so the file may be much larger than the available memory.
+	 *  As with load(), the rows are used in the order in which they are stored.
+	 *  
+	 *  @param file a 24 bit bitmap file without compression.
+	 *  
+	 *  @return a tile source that keeps the file open until it is closed.
+	 *  
+	 *  @throws IOException if the file can't be read or is not a supported bitmap.
+	 *  
+	 *  @see TiledDecoder#decode(TileSource, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public static TileSource openTiles(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(54);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) break;
+			}
+			int[] size = readHeader(header.array(), file.toString());
+			if (channel.size() < 54 + ((long) ((size[0] * 3 + 3) & ~3)) * size[1]) {
+				throw new IOException("Bitmap file is truncated: " + file);
+			}
+			return new BitmapTiles(channel, size[0], size[1]);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Checks the header of a bitmap and returns its width and height. */
+	//---------------------------------------------------------------------------------------
+	private static int[] readHeader(byte[] data, String name) throws IOException {
+		if ((data.length < 54) || (data[0] != 'B') || (data[1] != 'M')) {
+			throw new IOException("Not a bitmap file: " + name);
+		}
+		int data_offset = getInt(data, 10);
+		int width = getInt(data, 18);
+		int height = Math.abs(getInt(data, 22));
+		int bits_per_pixel = (data[28] & 0xFF) | ((data[29] & 0xFF) << 8);
+		int compression = getInt(data, 30);
+		if ((data_offset != 54) || (bits_per_pixel != 24) || (compression != 0)) {
+			throw new IOException("Only uncompressed 24 bit bitmaps are supported: " + name);
+		}
+		return new int[] { width, height };
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads a little endian int value from the given position. */
+	//---------------------------------------------------------------------------------------
+	private static int getInt(byte[] data, int pos) {
+		return (data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8) | ((data[pos + 2] & 0xFF) << 16) | ((data[pos + 3] & 0xFF) << 24);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads tiles of a bitmap file with positional reads, so that several threads can
+	 *  read tiles at the same time. */
+	//---------------------------------------------------------------------------------------
+	private static class BitmapTiles implements TileSource {
+
+		private final FileChannel channel;
+		private final int width;
+		private final int height;
+		private final int row_size;         // the size of a row in the file, padded to 4 bytes
+
+		BitmapTiles(FileChannel channel, int width, int height) {
+			this.channel = channel;
+			this.width = width;
+			this.height = height;
+			this.row_size = (width * 3 + 3) & ~3;
+		}
+
+		public GreyDevice readTile(int x, int y, int w, int h) throws IOException {
+			if ((x < 0) || (y < 0) || (w <= 0) || (h <= 0) || (x + w > width) || (y + h > height)) {
+				throw new IllegalArgumentException("tile out of range: " + x + "/" + y + " " + w + "x" + h);
+			}
+			GreyDevice tile = new GreyDevice(w, h);
+			ByteBuffer buffer = ByteBuffer.allocate(w * 3);
+			byte[] data = buffer.array();
+			byte[] grey = new byte[w];
+			for (int row = 0; row < h; row++) {
+				long position = 54 + (long) (y + row) * row_size + x * 3;
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					int read = channel.read(buffer, position + buffer.position());
+					if (read < 0) throw new IOException("Bitmap file is truncated");
+				}
+				for (int i = 0; i < w; i++) grey[i] = (byte) Luminance.getGrey(data, i * 3);
+				tile.setRow(row, grey, 0);
+			}
+			return tile;
+		}
+
+		public int getImageWidth() {
+			return width;
+		}
+
+		public int getImageHeight() {
+			return height;
+		}
+
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,257 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import batooImage.algorithm.*;
+import batooImage.algorithm.code.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  Checks that the decoder instances can be shared by several threads. 
+ *  <p>
+ *  The given bitmaps and a set of synthetic images are decoded by BarcodeDecoder.DEFAULT
+ *  with all predefined profiles, and the fields of synthetic codes are recognized by a
+ *  single Decoder_EAN13 instance. Each job is first run by one thread to get the 
+ *  expected result. Then all jobs are run again and again, in a different order for each
+ *  thread, by a pool of threads that use the same instances at the same time. Every 
+ *  result must be equal to the expected one, including the votes and the scanlines
+ *  that agree with the code.
+ *  <p>
+ *  Usage:<br>
+ *  java batooImage.application.ConcurrencyCheck [threads] [rounds] [bitmap files]
+ *  <p>
+ *  Without bitmap files, test/medium.bmp and test/medium2.bmp are used. The exit code is
+ *  1 if a result differs.
+ *
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class ConcurrencyCheck {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	// the rendering parameters of the images: module width, rotation, blur, noise, contrast
+	private static final float[][] SETTINGS = {
+		{ 3f, 0f, 0f, 0f, 1f },
+		{ 2f, 5f, 1f, 10f, 0.5f },
+		{ 1.5f, 10f, 2f, 25f, 0.25f },
+		{ 4f, 3f, 2f, 10f, 1f },
+	};
+
+	private static final DecoderProfile[] PROFILES = { DecoderProfile.FAST, DecoderProfile.BALANCED, DecoderProfile.THOROUGH };
+
+	// the number of synthetic codes whose fields are recognized by the shared Decoder_EAN13:
+	private static final int FIELD_CODES = 50;
+
+	// the maximum number of differences that are printed:
+	private static final int MAX_REPORTS = 10;
+
+	private static final long SEED = 31;
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int threads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+		if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+		String[] files = (args.length > 2) ? Arrays.copyOfRange(args, 2, args.length) : new String[] { "test/medium.bmp", "test/medium2.bmp" };
+
+		List<Callable<String>> jobs = createJobs(files);
+		String[] expected = new String[jobs.size()];
+		for (int i = 0; i < jobs.size(); i++) expected[i] = run(jobs.get(i));
+
+		long start = System.nanoTime();
+		int differences = check(jobs, expected, threads, rounds);
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		System.out.println(jobs.size() + " jobs, " + threads + " threads, " + rounds + " rounds per thread: " 
+			+ differences + " differences (" + millis + " ms)");
+		if (differences > 0) System.exit(1);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates the jobs: decoding the bitmaps and the synthetic images with every profile,
+	 *  and recognizing the fields of synthetic codes. Each job returns a description of
+	 *  its result.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static List<Callable<String>> createJobs(String[] files) throws IOException {
+		List<Device> devices = new ArrayList<Device>();
+		for (int i = 0; i < files.length; i++) devices.add(BitmapFile.load(new File(files[i])));
+
+		Random random = new Random(SEED);
+		for (int i = 0; i < SETTINGS.length; i++) {
+			float[] s = SETTINGS[i];
+			SyntheticImage generator = new SyntheticImage(s[0], s[1], s[2], s[3], s[4]);
+			for (int j = 0; j < 2; j++) devices.add(generator.createDevice(SyntheticImage.createRandomCode(random), random.nextLong()));
+		}
+
+		List<Callable<String>> jobs = new ArrayList<Callable<String>>();
+		for (final Device device : devices) {
+			for (final DecoderProfile profile : PROFILES) {
+				jobs.add(new Callable<String>() {
+					public String call() {
+						return describe(BarcodeDecoder.DEFAULT.decode(device, profile));
+					}
+				});
+			}
+		}
+
+		// the fields are rendered with a module width of two to four pixels, and with bars
+		// that are up to one pixel too wide or too narrow:
+		final Decoder_EAN13 decoder = new Decoder_EAN13();
+		for (int i = 0; i < FIELD_CODES; i++) {
+			final int[][] fields = createFields(SyntheticImage.createRandomCode(random), 2 + (i % 3), random);
+			for (final DecoderProfile profile : PROFILES) {
+				jobs.add(new Callable<String>() {
+					public String call() {
+						Barcode_EAN13 code = decoder.recognize(fields, 1, profile);
+						Barcode_EAN13Half[] halves = decoder.recognizeHalves(fields, 1, profile);
+						return code + " " + code.isValid() + " " + Arrays.toString(halves);
+					}
+				});
+			}
+		}
+		return jobs;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Runs all jobs for the given number of rounds on a pool of threads, and compares the
+	 *  results with the expected ones.
+	 *
+	 *  @return the number of differences.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static int check(final List<Callable<String>> jobs, final String[] expected, int threads, final int rounds) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < threads; t++) {
+				final long seed = SEED + t;
+				futures.add(executor.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						Random random = new Random(seed);
+						int[] order = new int[jobs.size()];
+						for (int i = 0; i < order.length; i++) order[i] = i;
+						int differences = 0;
+						for (int round = 0; round < rounds; round++) {
+							shuffle(order, random);
+							for (int i = 0; i < order.length; i++) {
+								String result = run(jobs.get(order[i]));
+								if (result.equals(expected[order[i]])) continue;
+								if (differences < MAX_REPORTS) {
+									System.out.println("job " + order[i] + ": expected " + expected[order[i]] + "\n\tbut got " + result);
+								}
+								differences++;
+							}
+						}
+						return differences;
+					}
+				}));
+			}
+
+			int differences = 0;
+			for (Future<Integer> future : futures) {
+				try {
+					differences += future.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("A job failed", e.getCause());
+				}
+			}
+			return differences;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Runs a job, turning its exception into the result. */
+	//---------------------------------------------------------------------------------------
+	private static String run(Callable<String> job) {
+		try {
+			return job.call();
+		} catch (Exception e) {
+			return e.toString();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the parts of a result that must not depend on other threads. */
+	//---------------------------------------------------------------------------------------
+	private static String describe(DecodeResult result) {
+		int[] votes = new int[13];
+		for (int i = 0; i < 13; i++) votes[i] = result.getVotes(i);
+		return result.getBarcode() + " " + result.isValid() + " votes " + Arrays.toString(votes) + " margins " 
+			+ Arrays.toString(result.getVoteMargins()) + " agreeing " + result.getAgreeingScanlines() + "/" 
+			+ result.getScanlines() + " hits " + Arrays.deepToString(result.getHits()) + " reused " 
+			+ Arrays.deepToString(result.getReusedHits());
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the fields of a scanline across the given code, between two quiet zones. */
+	//---------------------------------------------------------------------------------------
+	private static int[][] createFields(Barcode_EAN13 code, int module_width, Random random) {
+		boolean[] modules = Encoder_EAN13.encode(code);
+		List<int[]> fields = new ArrayList<int[]>();
+		fields.add(new int[] { 255, 10 * module_width });
+		int start = 0;
+		for (int i = 1; i <= modules.length; i++) {
+			if ((i < modules.length) && (modules[i] == modules[start])) continue;
+			fields.add(new int[] { modules[start] ? 0 : 255, (i - start) * module_width });
+			start = i;
+		}
+		fields.add(new int[] { 255, 10 * module_width });
+
+		// move the edges between the bars and spaces:
+		for (int i = 1; i < fields.size() - 2; i++) {
+			int shift = random.nextInt(3) - 1;
+			if ((fields.get(i)[1] + shift > 0) && (fields.get(i + 1)[1] - shift > 0)) {
+				fields.get(i)[1] += shift;
+				fields.get(i + 1)[1] -= shift;
+			}
+		}
+		return fields.toArray(new int[fields.size()][]);
+	}
+
+	private static void shuffle(int[] order, Random random) {
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = order[i];
+			order[i] = order[j];
+			order[j] = temp;
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import batooImage.algorithm.Barcode;
+import batooImage.algorithm.ImageDevice;
+import batooImage.algorithm.code.Barcode_EAN13;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  Measures the read rate and the throughput of ImageDevice.recognize() on synthetic
+ *  images, for a grid of module widths, rotations, blur radii, noise levels and 
+ *  contrasts.
+ *  <p>
+ *  For every combination, the given number of random codes is rendered with the 
+ *  SyntheticImage class and decoded. An image counts as read if the decoder returns 
+ *  the rendered code, and as misread if it returns a different valid code. The speed 
+ *  only includes the decoding, not the rendering. The codes are taken from a fixed 
+ *  seed, so runs can be compared with each other.
+ *  <p>
+ *  If an output directory is given, the images are also written there as bitmaps, 
+ *  with the code in the file name, so they can be used as a corpus for the 
+ *  ProfileTuner.
+ *  <p>
+ *  Usage:<br>
+ *  java batooImage.application.CorpusRunner [codes per setting] [output directory]
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class CorpusRunner {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	// the grid of rendering parameters:
+	private static final float[] MODULE_WIDTHS = { 1.5f, 2f, 3f, 4f };
+	private static final float[] ROTATIONS = { 0f, 5f, 10f };
+	private static final float[] BLURS = { 0f, 1f, 2f };
+	private static final float[] NOISES = { 0f, 10f, 25f };
+	private static final float[] CONTRASTS = { 1f, 0.5f, 0.25f };
+
+	private static final long SEED = 13;
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		int codes_per_setting = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+		File directory = (args.length > 1) ? new File(args[1]) : null;
+		if ((directory != null) && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't create directory: " + directory);
+		}
+
+		Random random = new Random(SEED);
+		int total_images = 0;
+		int total_read = 0;
+		int total_misread = 0;
+		long total_nanos = 0;
+
+		System.out.println("module\trotation\tblur\tnoise\tcontrast\tread\tmisread\timages/s");
+		for (int m = 0; m < MODULE_WIDTHS.length; m++) {
+			for (int r = 0; r < ROTATIONS.length; r++) {
+				for (int b = 0; b < BLURS.length; b++) {
+					for (int n = 0; n < NOISES.length; n++) {
+						for (int c = 0; c < CONTRASTS.length; c++) {
+							SyntheticImage generator = new SyntheticImage(MODULE_WIDTHS[m], ROTATIONS[r], BLURS[b], NOISES[n], CONTRASTS[c]);
+							int read = 0;
+							int misread = 0;
+							long nanos = 0;
+
+							for (int i = 0; i < codes_per_setting; i++) {
+								Barcode_EAN13 code = SyntheticImage.createRandomCode(random);
+								long seed = random.nextLong();
+								ImageDevice device = generator.createDevice(code, seed);
+								if (directory != null) {
+									String name = code + "_" + total_images + ".bmp";
+									generator.write(code, seed, new File(directory, name));
+								}
+
+								long start = System.nanoTime();
+								Barcode result = device.recognize();
+								nanos += System.nanoTime() - start;
+
+								if (result.toString().equals(code.toString())) {
+									read++;
+								} else if (result.isValid()) {
+									misread++;
+								}
+								total_images++;
+							}
+
+							System.out.println(MODULE_WIDTHS[m] + "\t" + ROTATIONS[r] + "\t" + BLURS[b] + "\t" + NOISES[n] + "\t" 
+								+ CONTRASTS[c] + "\t" + read + "/" + codes_per_setting + "\t" + misread + "\t" + getImagesPerSecond(codes_per_setting, nanos));
+							total_read += read;
+							total_misread += misread;
+							total_nanos += nanos;
+						}
+					}
+				}
+			}
+		}
+
+		System.out.println("Read " + total_read + " of " + total_images + " images (" + (100 * total_read / Math.max(1, total_images)) 
+			+ "%), " + total_misread + " misreads, " + getImagesPerSecond(total_images, total_nanos) + " images/s");
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the throughput for the given number of images and the total decoding time. */
+	//---------------------------------------------------------------------------------------
+	private static long getImagesPerSecond(int images, long nanos) {
+		return (nanos > 0) ? images * 1000000000L / nanos : 0;
+	}
+
+}
@@ -0,0 +1,257 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import batooImage.algorithm.code.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  A client of the DecodeDaemon. The requests can be sent one after another without
+ *  waiting for the results (send...() methods), and the results are received in the
+ *  same order (receive()). The decode...() methods do both.
+ *  <p>
+ *  Usage:<br>
+ *  java batooImage.application.DecodeClient &lt;socket path&gt; [profile] &lt;file&gt; ...<br>
+ *  prints the results in the same format as the ImageLoader.
+ *
+ *  @see DecodeDaemon
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class DecodeClient implements Closeable {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private final SocketChannel channel;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private int pending = 0;                 // the number of requests whose results haven't been received
+	private int decode_micros = 0;           // the decode time of the last received result
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Connects to a daemon.
+	 *
+	 *  @param socket_path the path of the Unix domain socket of the daemon.
+	 *
+	 *  @throws IOException if the daemon isn't running.
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeClient(Path socket_path) throws IOException {
+		channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(UnixDomainSocketAddress.of(socket_path));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+		out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java batooImage.application.DecodeClient <socket path> [profile] <file> ...");
+			return;
+		}
+		int first_file = 1;
+		int profile = getProfileId(args[1]);
+		if (profile >= 0) first_file = 2;
+		else profile = DecodeDaemon.PROFILE_DEFAULT;
+
+		DecodeClient client = new DecodeClient(Paths.get(args[0]));
+		try {
+			// send all requests at once, the daemon decodes them while the results are printed:
+			for (int i = first_file; i < args.length; i++) client.sendFile(new File(args[i]), profile);
+			for (int i = first_file; i < args.length; i++) {
+				try {
+					Barcode_EAN13 barcode = client.receive();
+					System.out.println("The recognized barcode is: " + barcode.toString());
+					System.out.println("Valid: " + barcode.isValid());
+				} catch (DecodeException e) {
+					System.out.println(args[i] + ": " + e.getMessage());
+				}
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the id of a predefined profile (see DecodeDaemon), or -1 for other names. */
+	//---------------------------------------------------------------------------------------
+	public static int getProfileId(String name) {
+		if (name.equalsIgnoreCase("fast")) return DecodeDaemon.PROFILE_FAST;
+		if (name.equalsIgnoreCase("balanced")) return DecodeDaemon.PROFILE_BALANCED;
+		if (name.equalsIgnoreCase("thorough")) return DecodeDaemon.PROFILE_THOROUGH;
+		if (name.equalsIgnoreCase("default")) return DecodeDaemon.PROFILE_DEFAULT;
+		return -1;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes an image file. The file is read by the daemon, so the path must be valid
+	 *  for the daemon.
+	 *
+	 *  @param profile one of the DecodeDaemon.PROFILE_... constants.
+	 *
+	 *  @throws DecodeException if the daemon can't read the file.
+	 *  @throws IOException if the connection fails.
+	 */
+	//---------------------------------------------------------------------------------------
+	public Barcode_EAN13 decodeFile(File file, int profile) throws IOException {
+		sendFile(file, profile);
+		return receive();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes an image given as greyscale bytes (one byte per pixel, top row first).
+	 *
+	 *  @see #decodeFile(File, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public Barcode_EAN13 decodeGrey(byte[] pixels, int width, int height, int profile) throws IOException {
+		sendPixels(DecodeDaemon.REQUEST_GREY, pixels, width, height, profile);
+		return receive();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes an image given as RGB bytes (three bytes per pixel, top row first).
+	 *
+	 *  @see #decodeFile(File, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public Barcode_EAN13 decodeRGB(byte[] pixels, int width, int height, int profile) throws IOException {
+		sendPixels(DecodeDaemon.REQUEST_RGB, pixels, width, height, profile);
+		return receive();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Sends a request to decode an image file, without waiting for the result. */
+	//---------------------------------------------------------------------------------------
+	public void sendFile(File file, int profile) throws IOException {
+		byte[] path = file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+		if (path.length > 0xFFFF) throw new IllegalArgumentException("The path is too long: " + file);
+		out.writeByte(DecodeDaemon.REQUEST_FILE);
+		out.writeByte(profile);
+		out.writeShort(path.length);
+		out.write(path);
+		pending++;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Sends a request to decode an image given as greyscale or RGB bytes, without
+	 *  waiting for the result.
+	 *
+	 *  @param type DecodeDaemon.REQUEST_GREY or DecodeDaemon.REQUEST_RGB.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void sendPixels(int type, byte[] pixels, int width, int height, int profile) throws IOException {
+		if ((type != DecodeDaemon.REQUEST_GREY) && (type != DecodeDaemon.REQUEST_RGB)) throw new IllegalArgumentException("Invalid request type: " + type);
+		int size = width * height * ((type == DecodeDaemon.REQUEST_RGB) ? 3 : 1);
+		if ((width <= 0) || (height <= 0) || (pixels.length < size)) throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+		out.writeByte(type);
+		out.writeByte(profile);
+		out.writeInt(width);
+		out.writeInt(height);
+		out.write(pixels, 0, size);
+		pending++;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Receives the result of the oldest request that hasn't been received yet.
+	 *
+	 *  @return the recognized code, with -1 for digits that haven't been recognized.
+	 *
+	 *  @throws DecodeException if the daemon couldn't read the image.
+	 *  @throws IOException if the connection fails.
+	 */
+	//---------------------------------------------------------------------------------------
+	public Barcode_EAN13 receive() throws IOException {
+		if (pending == 0) throw new IllegalStateException("No request has been sent");
+		out.flush();
+		int status = in.readUnsignedByte();
+		pending--;
+		if (status == DecodeDaemon.STATUS_ERROR) {
+			byte[] message = new byte[in.readUnsignedShort()];
+			in.readFully(message);
+			throw new DecodeException(new String(message, StandardCharsets.UTF_8));
+		}
+		int[] numbers = new int[13];
+		for (int i = 0; i < 13; i++) numbers[i] = in.readByte();
+		decode_micros = in.readInt();
+		return new Barcode_EAN13(numbers);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Closes the connection. */
+	//---------------------------------------------------------------------------------------
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	/** @return the number of requests whose results haven't been received yet. */
+	public int getPendingRequests() {
+		return pending;
+	}
+
+	/** @return the time the daemon needed to decode the image of the last received result, in microseconds. */
+	public int getDecodeMicros() {
+		return decode_micros;
+	}
+
+	//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+	/** The daemon couldn't read an image. The connection can still be used, unless the
+	 *  request itself was invalid. */
+	//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+	public static class DecodeException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public DecodeException(String message) {
+			super(message);
+		}
+	}
+
+}
@@ -0,0 +1,448 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import batooImage.algorithm.*;
+import batooImage.algorithm.code.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  A long running decode server, listening on a Unix domain socket. It avoids the
+ *  start of a new JVM for every image: the decoders stay loaded and compiled, and the
+ *  greyscale rows are reused through a DecodeSessionPool.
+ *  <p>
+ *  Every connection can send any number of requests; the results are sent back in
+ *  the order of the requests, so a client can send several requests before it reads
+ *  the results. These requests are decoded at the same time. All numbers are big endian.
+ *  <p>
+ *  Request:<br>
+ *  byte type: REQUEST_FILE, REQUEST_GREY or REQUEST_RGB<br>
+ *  byte profile: PROFILE_DEFAULT, PROFILE_FAST, PROFILE_BALANCED or PROFILE_THOROUGH<br>
+ *  REQUEST_FILE: short length, the path in UTF-8 (bmp, pgm/ppm or any javax.imageio format)<br>
+ *  REQUEST_GREY: int width, int height, width * height greyscale bytes, top row first<br>
+ *  REQUEST_RGB: int width, int height, width * height * 3 RGB bytes, top row first<br>
+ *  <p>
+ *  Response:<br>
+ *  byte status: STATUS_VALID, STATUS_INVALID or STATUS_ERROR<br>
+ *  STATUS_VALID, STATUS_INVALID: 13 bytes with the digits of the code (-1 for digits
+ *  that haven't been recognized), int decode time in microseconds<br>
+ *  STATUS_ERROR: short length, the error message in UTF-8<br>
+ *  After the error of an invalid request, e.g. with an unknown type or profile, the
+ *  connection is closed, because the rest of the request can't be skipped.
+ *  <p>
+ *  Usage:<br>
+ *  java batooImage.application.DecodeDaemon &lt;socket path&gt; [profile] [threads] [warmup rounds]<br>
+ *  With warmup rounds, synthetic images are decoded before the socket is opened (see
+ *  Warmup), so that the first requests are served by compiled code.
+ *
+ *  @see DecodeClient
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class DecodeDaemon {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	public static final int REQUEST_FILE = 1;
+	public static final int REQUEST_GREY = 2;
+	public static final int REQUEST_RGB = 3;
+
+	public static final int PROFILE_DEFAULT = 0;
+	public static final int PROFILE_FAST = 1;
+	public static final int PROFILE_BALANCED = 2;
+	public static final int PROFILE_THOROUGH = 3;
+
+	public static final int STATUS_VALID = 0;
+	public static final int STATUS_INVALID = 1;
+	public static final int STATUS_ERROR = 2;
+
+	/** The max. number of pixels of an image sent with a request. */
+	public static final int MAX_PIXELS = 1 << 26;
+
+	/** The max. number of requests of a connection that are decoded or wait to be sent. */
+	public static final int MAX_PENDING_REQUESTS = 16;
+
+	private static final Future<DecodeResult> END_OF_REQUESTS = CompletableFuture.completedFuture(null);
+
+	private final Path socket_path;
+	private final DecoderProfile default_profile;
+	private final BarcodeDecoder decoder;
+	private final DecodeSessionPool sessions;
+	private final ExecutorService decode_threads;       // runs the decodes, one per thread at a time
+	private final ExecutorService connection_threads;   // reads the requests of the connections
+
+	private volatile ServerSocketChannel server;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** @param socket_path the path of the Unix domain socket. An existing file at this path
+	 *         is replaced.
+	 *  @param default_profile the profile used for requests with PROFILE_DEFAULT.
+	 *  @param threads the number of images that are decoded at the same time.
+	 */
+	//---------------------------------------------------------------------------------------
+	public DecodeDaemon(Path socket_path, DecoderProfile default_profile, int threads) {
+		if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+		this.socket_path = socket_path;
+		this.default_profile = default_profile;
+		this.decoder = BarcodeDecoder.DEFAULT;
+		this.sessions = new DecodeSessionPool(threads);
+		this.decode_threads = Executors.newFixedThreadPool(threads);
+		this.connection_threads = Executors.newCachedThreadPool();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java batooImage.application.DecodeDaemon <socket path> [profile] [threads] [warmup rounds]");
+			return;
+		}
+		DecoderProfile profile = DecoderProfile.BALANCED;
+		if (args.length > 1) {
+			profile = DecoderProfile.forName(args[1]);
+			if (profile == null) profile = DecoderProfile.load(new File(args[1]));
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 2) threads = Integer.parseInt(args[2]);
+		int warmup_rounds = (args.length > 3) ? Integer.parseInt(args[3]) : 0;
+
+		final DecodeDaemon daemon = new DecodeDaemon(Paths.get(args[0]), profile, threads);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				daemon.close();
+			}
+		});
+		if (warmup_rounds > 0) {
+			long nanos = Warmup.run(warmup_rounds);
+			System.out.println("Warmup: " + warmup_rounds + " rounds in " + (nanos / 1000000) + " ms");
+		}
+		System.out.println("Listening on " + args[0] + " (" + profile + ", " + threads + " threads)");
+		daemon.serve();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Accepts connections until the daemon is closed. Each connection is served by its
+	 *  own thread.
+	 *
+	 *  @throws IOException if the socket can't be created.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void serve() throws IOException {
+		Files.deleteIfExists(socket_path);
+		server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		server.bind(UnixDomainSocketAddress.of(socket_path));
+		try {
+			while (server.isOpen()) {
+				final SocketChannel connection;
+				try {
+					connection = server.accept();
+				} catch (IOException e) {
+					if (!server.isOpen()) break;
+					throw e;
+				}
+				connection_threads.execute(new Runnable() {
+					public void run() {
+						serveConnection(connection);
+					}
+				});
+			}
+		} finally {
+			close();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Stops accepting connections and removes the socket file. */
+	//---------------------------------------------------------------------------------------
+	public void close() {
+		try {
+			if (server != null) server.close();
+			Files.deleteIfExists(socket_path);
+		} catch (IOException e) {
+			// nothing left to clean up
+		}
+		connection_threads.shutdownNow();
+		decode_threads.shutdownNow();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the requests of a connection until the client closes the connection. The
+	 *  images are decoded on the decode threads while the next requests are read, and a
+	 *  second thread sends the results back in the order of the requests. */
+	//---------------------------------------------------------------------------------------
+	private void serveConnection(final SocketChannel connection) {
+		final BlockingQueue<Future<DecodeResult>> results = new ArrayBlockingQueue<Future<DecodeResult>>(MAX_PENDING_REQUESTS);
+		Future<?> writer = connection_threads.submit(new Runnable() {
+			public void run() {
+				writeResults(connection, results);
+			}
+		});
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new ChannelInput(connection)));
+			while (true) {
+				int type = in.read();
+				if (type < 0) break;
+				try {
+					DecoderProfile profile = getProfile(in.readUnsignedByte());
+					results.put(decode(readImage(type, in, profile), profile));
+				} catch (EOFException e) {
+					break;
+				} catch (IOException e) {
+					results.put(CompletableFuture.<DecodeResult>failedFuture(e));
+				} catch (IllegalArgumentException e) {
+					// the rest of an invalid request can't be skipped, so the connection is closed:
+					results.put(CompletableFuture.<DecodeResult>failedFuture(e));
+					break;
+				}
+			}
+			results.put(END_OF_REQUESTS);
+			writer.get();
+		} catch (IOException e) {
+			// the client has closed the connection
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// the results can't be sent anymore, so only the daemon can report the failure:
+			System.err.println("DecodeDaemon: sending the results failed, the connection is closed: " + e.getCause());
+		} finally {
+			writer.cancel(true);
+			try {
+				connection.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Sends the results of a connection in the order of the requests. The output is
+	 *  flushed whenever the next result isn't available yet. */
+	//---------------------------------------------------------------------------------------
+	private void writeResults(SocketChannel connection, BlockingQueue<Future<DecodeResult>> results) {
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new ChannelOutput(connection)));
+			while (true) {
+				Future<DecodeResult> result = results.peek();
+				if ((result == null) || !result.isDone()) out.flush();
+				result = results.take();
+				if (result == END_OF_REQUESTS) break;
+				try {
+					writeResult(out, result.get());
+				} catch (ExecutionException e) {
+					writeError(out, e.getCause().getMessage());
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			// the client has closed the connection
+		} catch (InterruptedException e) {
+			// the connection is closed
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the image of a request.
+	 *
+	 *  @throws IOException if the image file can't be read or the connection is closed.
+	 *  @throws IllegalArgumentException if the request is invalid.
+	 */
+	//---------------------------------------------------------------------------------------
+	private Device readImage(int type, DataInputStream in, DecoderProfile profile) throws IOException {
+		if (type == REQUEST_FILE) {
+			byte[] path = new byte[in.readUnsignedShort()];
+			in.readFully(path);
+			return openFile(new File(new String(path, StandardCharsets.UTF_8)), profile.getScanPlan());
+		}
+		if ((type != REQUEST_GREY) && (type != REQUEST_RGB)) throw new IllegalArgumentException("Unknown request type: " + type);
+
+		int width = in.readInt();
+		int height = in.readInt();
+		if ((width <= 0) || (height <= 0) || ((long) width * height > MAX_PIXELS)) {
+			throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+		}
+		GreyDevice device = new GreyDevice(width, height);
+		byte[] row = new byte[(type == REQUEST_RGB) ? width * 3 : width];
+		byte[] grey = new byte[width];
+		for (int y = 0; y < height; y++) {
+			in.readFully(row);
+			if (type == REQUEST_GREY) {
+				device.setRow(y, row, 0);
+				continue;
+			}
+			for (int x = 0; x < width; x++) {
+				grey[x] = (byte) Luminance.getGrey(row[3 * x] & 0xFF, row[3 * x + 1] & 0xFF, row[3 * x + 2] & 0xFF);
+			}
+			device.setRow(y, grey, 0);
+		}
+		return device;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Opens an image file: bitmaps with BitmapFile, Netpbm files with NetpbmReader (the
+	 *  first frame) and all other formats with javax.imageio. Only the rows of the
+	 *  scanlines of the given plan are read from Netpbm and javax.imageio files.
+	 */
+	//---------------------------------------------------------------------------------------
+	static Device openFile(File file, ScanPlan plan) throws IOException {
+		if (!file.isFile()) throw new FileNotFoundException("No such image file: " + file);
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".bmp")) return BitmapFile.load(file);
+		if (name.endsWith(".pgm") || name.endsWith(".ppm") || name.endsWith(".pnm")) {
+			NetpbmReader reader = new NetpbmReader(file);
+			try {
+				GreyDevice frame = reader.readFrame(plan);
+				if (frame == null) throw new IOException("The file contains no image: " + file);
+				return frame;
+			} finally {
+				reader.close();
+			}
+		}
+		return new ImageIODevice(file, 1, plan);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes an image on one of the decode threads, using a pooled session. Devices that
+	 *  keep a file open are closed afterwards. */
+	//---------------------------------------------------------------------------------------
+	private Future<DecodeResult> decode(final Device device, final DecoderProfile profile) {
+		return decode_threads.submit(new Callable<DecodeResult>() {
+			public DecodeResult call() throws IOException {
+				DecodeSession session = sessions.acquire(device);
+				try {
+					return decoder.decode(session, profile);
+				} finally {
+					sessions.release(session);
+					if (device instanceof Closeable) ((Closeable) device).close();
+				}
+			}
+		});
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the profile of a request.
+	 *
+	 *  @throws IllegalArgumentException if the profile id is unknown.
+	 */
+	//---------------------------------------------------------------------------------------
+	private DecoderProfile getProfile(int profile_id) {
+		switch (profile_id) {
+			case PROFILE_DEFAULT: return default_profile;
+			case PROFILE_FAST: return DecoderProfile.FAST;
+			case PROFILE_BALANCED: return DecoderProfile.BALANCED;
+			case PROFILE_THOROUGH: return DecoderProfile.THOROUGH;
+			default: throw new IllegalArgumentException("Unknown profile: " + profile_id);
+		}
+	}
+
+	private static void writeResult(DataOutputStream out, DecodeResult result) throws IOException {
+		Barcode barcode = result.getBarcode();
+		out.writeByte(barcode.isValid() ? STATUS_VALID : STATUS_INVALID);
+		int[] numbers = (barcode instanceof Barcode_EAN13) ? ((Barcode_EAN13) barcode).getNumbers() : new int[0];
+		for (int i = 0; i < 13; i++) out.writeByte((i < numbers.length) ? numbers[i] : -1);
+		out.writeInt((int) Math.min(Integer.MAX_VALUE, result.getElapsedNanos() / 1000));
+	}
+
+	private static void writeError(DataOutputStream out, String message) throws IOException {
+		byte[] bytes = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+		int length = Math.min(bytes.length, 0xFFFF);
+		out.writeByte(STATUS_ERROR);
+		out.writeShort(length);
+		out.write(bytes, 0, length);
+	}
+
+	//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+	/** Reads from a socket channel. (The streams of java.nio.channels.Channels share a
+	 *  lock, so a connection couldn't be read and written at the same time.) */
+	//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+	private static class ChannelInput extends InputStream {
+		private final SocketChannel channel;
+
+		ChannelInput(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+		}
+
+		public int read(byte[] b, int offset, int length) throws IOException {
+			if (length == 0) return 0;
+			return channel.read(ByteBuffer.wrap(b, offset, length));
+		}
+	}
+
+	//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+	/** Writes to a socket channel. */
+	//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+	private static class ChannelOutput extends OutputStream {
+		private final SocketChannel channel;
+
+		ChannelOutput(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		public void write(byte[] b, int offset, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, offset, length);
+			while (buffer.hasRemaining()) channel.write(buffer);
+		}
+	}
+
+}
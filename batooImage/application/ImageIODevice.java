@@ -0,0 +1,303 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import batooImage.algorithm.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  A device for all image formats that can be read by javax.imageio, e.g. JPEG and PNG.
+ *  <p>
+ *  The image isn't decoded completely. When the device is created, only the rows of
+ *  the scanlines of a scan plan are decoded, using the source region and the source
+ *  subsampling of an ImageReadParam. If the scanlines are evenly spaced, all of them
+ *  are read by a single read of the image. Rows that are needed later, e.g. by a
+ *  decoder with a different scan plan, are read on demand.
+ *  <p>
+ *  With a subsampling factor greater than one, the device has the size of the
+ *  subsampled image, and only every n-th pixel of a row is decoded. This is useful for
+ *  photos whose resolution is much higher than needed for the barcode.
+ *  <p>
+ *  The device keeps the image file open until close() is called. It can be used by
+ *  several threads at the same time.
+ *
+ *  @see BarcodeDecoder#decode(Device, DecoderProfile)
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class ImageIODevice implements Device, Closeable {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private final ImageInputStream input;
+	private final ImageReader reader;
+	private final int subsampling;         // the source subsampling in both directions
+
+	private final int source_width;        // the size of the image in the file
+	private final int source_height;
+	private final int image_width;         // the size of the subsampled image
+	private final int image_height;
+
+	private final int[][] rows;            // the packed RGB values of the decoded rows, null for other rows
+	private int decoded_rows = 0;          // the number of decoded rows
+	private int image_reads = 0;           // the number of reads of the image
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Opens the given image and decodes the rows of the default scan plan.
+	 *
+	 *  @param file an image file in a format supported by javax.imageio.
+	 *  @param subsampling only every n-th row and column of the image is used. (1 for all)
+	 *
+	 *  @throws IOException if the file can't be read or its format isn't supported.
+	 */
+	//---------------------------------------------------------------------------------------
+	public ImageIODevice(File file, int subsampling) throws IOException {
+		this(file, subsampling, ScanPlan.DEFAULT);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Opens the given image and decodes the rows of the scanlines of the given plan.
+	 *
+	 *  @param file an image file in a format supported by javax.imageio.
+	 *  @param subsampling only every n-th row and column of the image is used. (1 for all)
+	 *  @param plan the scan plan of the decoder profile that will be used, or null if
+	 *         all rows should be decoded on demand.
+	 *
+	 *  @throws IOException if the file can't be read or its format isn't supported.
+	 */
+	//---------------------------------------------------------------------------------------
+	public ImageIODevice(File file, int subsampling, ScanPlan plan) throws IOException {
+		if (subsampling <= 0) throw new IllegalArgumentException("subsampling must be positive: " + subsampling);
+		this.subsampling = subsampling;
+
+		input = ImageIO.createImageInputStream(file);
+		if (input == null) throw new IOException("Can't open the image file: " + file);
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+		if (!readers.hasNext()) {
+			input.close();
+			throw new IOException("Unsupported image format: " + file);
+		}
+		reader = readers.next();
+		reader.setInput(input, false, true);
+
+		try {
+			source_width = reader.getWidth(0);
+			source_height = reader.getHeight(0);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+		image_width = (source_width + subsampling - 1) / subsampling;
+		image_height = (source_height + subsampling - 1) / subsampling;
+		rows = new int[image_height][];
+
+		if (plan != null) {
+			try {
+				loadRows(plan.getScanlines(image_width, image_height));
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public Barcode recognize() {
+		return BarcodeDecoder.DEFAULT.recognizeBarcode(this);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes the rows crossed by the given scanlines, as far as they haven't been
+	 *  decoded yet. Evenly spaced horizontal scanlines are read with a single read of
+	 *  the image, using a vertical subsampling of the spacing of the scanlines. Otherwise
+	 *  all rows from the first to the last missing row are read.
+	 *
+	 *  @param scanlines x1, y1, x2, y2 of each scanline, in the coordinates of this device.
+	 *
+	 *  @throws IOException if the image can't be read.
+	 */
+	//---------------------------------------------------------------------------------------
+	public synchronized void loadRows(int[][] scanlines) throws IOException {
+
+		// collect the missing rows, from top to bottom:
+		boolean[] missing = new boolean[image_height];
+		boolean horizontal = true;
+		for (int i = 0; i < scanlines.length; i++) {
+			int y1 = clampRow(scanlines[i][1]);
+			int y2 = clampRow(scanlines[i][3]);
+			if (y1 != y2) horizontal = false;
+			for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) missing[y] = (rows[y] == null);
+		}
+		int first = -1;
+		int last = -1;
+		int step = 0;
+		boolean evenly_spaced = horizontal;
+		for (int y = 0; y < image_height; y++) {
+			if (!missing[y]) continue;
+			if (first < 0) first = y;
+			else if (step == 0) step = y - last;
+			else if (y - last != step) evenly_spaced = false;
+			last = y;
+		}
+		if (first < 0) return;
+
+		if (evenly_spaced && (step > 1)) readRows(first, last, step);
+		else readRows(first, last, 1);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads every step-th row from the first to the last given row with one read of
+	 *  the image, and stores the rows that haven't been decoded yet.
+	 */
+	//---------------------------------------------------------------------------------------
+	private void readRows(int first, int last, int step) throws IOException {
+		int source_y = first * subsampling;
+		int source_rows = Math.min(source_height - source_y, (last - first) * subsampling + 1);
+
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setSourceRegion(new Rectangle(0, source_y, source_width, source_rows));
+		param.setSourceSubsampling(subsampling, step * subsampling, 0, 0);
+		BufferedImage image = reader.read(0, param);
+		image_reads++;
+
+		int w = Math.min(image_width, image.getWidth());
+		for (int i = 0; i < image.getHeight(); i++) {
+			int y = first + i * step;
+			if ((y >= image_height) || (rows[y] != null)) continue;
+			int[] row = new int[image_width];
+			image.getRGB(0, i, w, 1, row, 0, image_width);
+			rows[y] = row;
+			decoded_rows++;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Makes sure that the rows from y1 to y2 have been decoded. */
+	//---------------------------------------------------------------------------------------
+	private synchronized void ensureRows(int y1, int y2) {
+		for (int y = y1; y <= y2; y++) {
+			if (rows[y] != null) continue;
+			try {
+				loadRows(new int[][] { { 0, y1, 0, y2 } });
+			} catch (IOException e) {
+				throw new UncheckedIOException("Can't read the rows " + y1 + " to " + y2, e);
+			}
+			return;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Extracts color values from the image along a specified path, using the color of
+	 *  the pixel that contains the current position. The rows of the path are decoded
+	 *  if necessary.
+	 *
+	 *  @throws UncheckedIOException if a row can't be read from the image file.
+	 *
+	 *  @see ImageDevice#getPath(int, int, int, int, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public int[][] getPath(int x1, int y1, int x2, int y2, int w) {
+		int dx = x2 - x1;
+		int dy = y2 - y1;
+		int distance = (int) Math.sqrt((double) dx * dx + (double) dy * dy);
+		int[][] path = new int[distance][3];
+		if (distance == 0) return path;
+		ensureRows(clampRow(Math.min(y1, y2)), clampRow(Math.max(y1, y2)));
+
+		// the current position and the step width in fixed point values:
+		long px = ((long) x1) << 16;
+		long py = ((long) y1) << 16;
+		long step_x = (((long) dx) << 16) / distance;
+		long step_y = (((long) dy) << 16) / distance;
+
+		for (int i = 0; i < distance; i++) {
+			int x = Math.min(image_width - 1, Math.max(0, (int) (px >> 16)));
+			int rgb = rows[clampRow((int) (py >> 16))][x];
+			path[i][0] = (rgb >> 16) & 0xFF;
+			path[i][1] = (rgb >> 8) & 0xFF;
+			path[i][2] = rgb & 0xFF;
+			px = px + step_x;
+			py = py + step_y;
+		}
+		return path;
+	}
+
+	private int clampRow(int y) {
+		return Math.min(image_height - 1, Math.max(0, y));
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Releases the image reader and closes the image file. */
+	//---------------------------------------------------------------------------------------
+	public synchronized void close() throws IOException {
+		reader.dispose();
+		input.close();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public int getImageWidth() {
+		return image_width;
+	}
+
+	public int getImageHeight() {
+		return image_height;
+	}
+
+	public int getSubsampling() {
+		return subsampling;
+	}
+
+	/** @return the number of rows that have been decoded so far. */
+	public synchronized int getDecodedRows() {
+		return decoded_rows;
+	}
+
+	/** @return the number of times the image has been read so far. */
+	public synchronized int getImageReads() {
+		return image_reads;
+	}
+
+	public String toString() {
+		return "ImageIODevice " + image_width + "x" + image_height + ", subsampling " + subsampling;
+	}
+
+}
@@ -0,0 +1,139 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import batooImage.algorithm.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  Reads tiles of an image in any format supported by javax.imageio, using the source
+ *  region of an ImageReadParam. 
+ *  <p>
+ *  The tiles are read one after another, because an ImageReader can't be used by
+ *  several threads. Formats that store the image in strips (e.g. PNG and baseline JPEG)
+ *  have to be decoded up to the last row of a tile, so reading tiles of these formats
+ *  is slow; uncompressed formats (see BitmapFile and NetpbmReader) should be preferred
+ *  for very large images.
+ *
+ *  @see TiledDecoder#decode(TileSource, int)
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class ImageIOTileSource implements TileSource {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private final ImageInputStream input;
+	private final ImageReader reader;
+	private final int image_width;
+	private final int image_height;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Opens the given image.
+	 *
+	 *  @param file an image file in a format supported by javax.imageio.
+	 *
+	 *  @throws IOException if the file can't be read or its format isn't supported.
+	 */
+	//---------------------------------------------------------------------------------------
+	public ImageIOTileSource(File file) throws IOException {
+		input = ImageIO.createImageInputStream(file);
+		if (input == null) throw new IOException("Can't open the image file: " + file);
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+		if (!readers.hasNext()) {
+			input.close();
+			throw new IOException("Unsupported image format: " + file);
+		}
+		reader = readers.next();
+		reader.setInput(input, false, true);
+
+		try {
+			image_width = reader.getWidth(0);
+			image_height = reader.getHeight(0);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public synchronized GreyDevice readTile(int x, int y, int width, int height) throws IOException {
+		if ((x < 0) || (y < 0) || (width <= 0) || (height <= 0) || (x + width > image_width) || (y + height > image_height)) {
+			throw new IllegalArgumentException("tile out of range: " + x + "/" + y + " " + width + "x" + height);
+		}
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setSourceRegion(new Rectangle(x, y, width, height));
+		BufferedImage image = reader.read(0, param);
+
+		GreyDevice tile = new GreyDevice(width, height);
+		int[] rgb = new int[width];
+		byte[] grey = new byte[width];
+		for (int row = 0; row < height; row++) {
+			image.getRGB(0, row, width, 1, rgb, 0, width);
+			for (int i = 0; i < width; i++) {
+				grey[i] = (byte) Luminance.getGrey((rgb[i] >> 16) & 0xFF, (rgb[i] >> 8) & 0xFF, rgb[i] & 0xFF);
+			}
+			tile.setRow(row, grey, 0);
+		}
+		return tile;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Releases the image reader and closes the image file. */
+	//---------------------------------------------------------------------------------------
+	public synchronized void close() throws IOException {
+		reader.dispose();
+		input.close();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	public int getImageWidth() {
+		return image_width;
+	}
+
+	public int getImageHeight() {
+		return image_height;
+	}
+
+	public String toString() {
+		return "ImageIOTileSource " + image_width + "x" + image_height;
+	}
+
+}
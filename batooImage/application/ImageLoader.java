@@ -19,15 +19,62 @@ class ImageLoader {
 		int imageWidth = 0;
 		int imageHeight = 0;
 		
-		try {
-			imageFileName = args[0];	
+		if (args.length < 1) {
+			System.out.println("Must give path to an image file as input, and optionally its dimensions.");
+			return;
+		}
+		imageFileName = args[0];
+
+		// the dimensions are optional, all formats contain the size of the image:
+		int profileArgument = 1;
+		if ((args.length > 2) && isNumber(args[1]) && isNumber(args[2])) {
 			imageWidth = java.lang.Integer.parseInt(args[1]);
 			imageHeight = java.lang.Integer.parseInt(args[2]);
-		} catch(java.lang.ArrayIndexOutOfBoundsException e) {
-			System.out.println("Must give path to a bitmap file as input & dimensions.");
+			profileArgument = 3;
+		} else if ((args.length > 1) && isNumber(args[1])) {
+			System.out.println("Must give both the width and the height of the image, or none of them: <file> [<width> <height>] [profile]");
 			return;
 		}
 		
+		// use the given decoder profile, either a predefined one or a profile file:
+		DecoderProfile profile = DecoderProfile.BALANCED;
+		if (args.length > profileArgument) {
+			profile = DecoderProfile.forName(args[profileArgument]);
+			if (profile == null) profile = DecoderProfile.load(new File(args[profileArgument]));
+		}
+
+		// Netpbm files can contain several frames, which are decoded one after another:
+		String lowerCaseName = imageFileName.toLowerCase();
+		if (lowerCaseName.endsWith(".pgm") || lowerCaseName.endsWith(".ppm") || lowerCaseName.endsWith(".pnm")) {
+			NetpbmReader netpbmReader = new NetpbmReader(new File(imageFileName));
+			try {
+				GreyDevice frame;
+				while ((frame = netpbmReader.readFrame(profile.getScanPlan())) != null) {
+					printBarcode(BarcodeDecoder.DEFAULT.recognizeBarcode(frame, profile));
+				}
+			} finally {
+				netpbmReader.close();
+			}
+			return;
+		}
+
+		// other formats than bitmaps are read with javax.imageio, decoding only the scanned rows:
+		if (!lowerCaseName.endsWith(".bmp")) {
+			ImageIODevice imageIODevice = new ImageIODevice(new File(imageFileName), 1, profile.getScanPlan());
+			try {
+				printBarcode(BarcodeDecoder.DEFAULT.recognizeBarcode(imageIODevice, profile));
+			} finally {
+				imageIODevice.close();
+			}
+			return;
+		}
+
+		// without dimensions, the size is taken from the header of the bitmap:
+		if (profileArgument == 1) {
+			printBarcode(BarcodeDecoder.DEFAULT.recognizeBarcode(BitmapFile.load(new File(imageFileName)), profile));
+			return;
+		}
+
 		File imageFile = null;
 		FileInputStream imageFileStream = null;
 		byte[] imageRawData = null;
@@ -60,10 +107,16 @@ class ImageLoader {
 		}
 		
 		ImageDevice imageDevice = new ImageDevice(imageRawData, imageWidth, imageHeight);
-		Barcode recognizedBarcode = imageDevice.recognize();
+		printBarcode(BarcodeDecoder.DEFAULT.recognizeBarcode(imageDevice, profile));
 		
+  }
+
+	private static void printBarcode(Barcode recognizedBarcode) {
 		System.out.println("The recognized barcode is: " + recognizedBarcode.toString());
 		System.out.println("Valid: " + recognizedBarcode.isValid());
-		
-  }
-}
\ No newline at end of file
+	}
+
+	private static boolean isNumber(String argument) {
+		return argument.matches("[0-9]+");
+	}
+}
@@ -0,0 +1,432 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import batooImage.algorithm.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  Reads binary Netpbm images (PGM "P5" and PPM "P6"), as written by many line scan
+ *  cameras. A file or stream may contain several images (frames) one after another.
+ *  <p>
+ *  The image data is read through a buffer of a fixed size (one strip of rows), and
+ *  each row is converted into greyscale values (see Luminance) as soon as it is in
+ *  the buffer. Only the rows of the scanlines of a scan plan are kept in the returned
+ *  GreyDevice, all other rows are skipped, without reading them at all if the channel
+ *  is seekable. So the memory needed for a frame is the strip buffer plus the scanned
+ *  rows, not the whole image.
+ *  <p>
+ *  Images that are too large even for that, e.g. panoramas, can be read in tiles with 
+ *  openTiles().
+ *  <p>
+ *  Usage:<br>
+ *  NetpbmReader reader = new NetpbmReader(file);<br>
+ *  GreyDevice frame;<br>
+ *  while ((frame = reader.readFrame(profile.getScanPlan())) != null) decoder.decode(frame, profile);<br>
+ *  reader.close();<br>
+ *
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class NetpbmReader implements Closeable {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	/** The size of the strip buffer in bytes. (It is enlarged for rows that don't fit.) */
+	public static final int STRIP_SIZE = 1 << 16;
+
+	private final ReadableByteChannel channel;
+	private ByteBuffer buffer;           // the strip buffer, in read mode
+	private int frames = 0;              // the number of frames that have been read
+	private long skipped_bytes = 0;      // the number of bytes of rows that haven't been kept
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Opens the given file.
+	 *
+	 *  @param file a file containing one or more binary PGM or PPM images.
+	 *
+	 *  @throws IOException if the file can't be opened.
+	 */
+	//---------------------------------------------------------------------------------------
+	public NetpbmReader(File file) throws IOException {
+		this(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the images from the given channel, e.g. a pipe that receives the frames of
+	 *  a camera. Each frame can be decoded as soon as it has been read.
+	 *
+	 *  @param channel a channel containing one or more binary PGM or PPM images.
+	 */
+	//---------------------------------------------------------------------------------------
+	public NetpbmReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(STRIP_SIZE);
+		buffer.flip();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the next frame, keeping the rows of the default scan plan.
+	 *
+	 *  @see #readFrame(ScanPlan)
+	 */
+	//---------------------------------------------------------------------------------------
+	public GreyDevice readFrame() throws IOException {
+		return readFrame(ScanPlan.DEFAULT);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the next frame.
+	 *
+	 *  @param plan the scan plan of the decoder profile that will be used, or null if all
+	 *         rows should be kept.
+	 *
+	 *  @return a device containing the rows of the scanlines of the plan, or null if the
+	 *          end of the input has been reached.
+	 *
+	 *  @throws IOException if the input can't be read, isn't a binary PGM or PPM image,
+	 *          or ends within a frame.
+	 */
+	//---------------------------------------------------------------------------------------
+	public GreyDevice readFrame(ScanPlan plan) throws IOException {
+
+		int[] header = readHeader();
+		if (header == null) return null;
+		int width = header[0];
+		int height = header[1];
+		int channels = header[2];
+		int max_value = header[3];
+
+		// the rows that should be kept:
+		GreyDevice device = new GreyDevice(width, height);
+		boolean[] keep = new boolean[height];
+		if (plan == null) {
+			for (int y = 0; y < height; y++) keep[y] = true;
+		} else {
+			int[][] scanlines = plan.getScanlines(width, height);
+			for (int i = 0; i < scanlines.length; i++) {
+				int y1 = Math.min(scanlines[i][1], scanlines[i][3]);
+				int y2 = Math.max(scanlines[i][1], scanlines[i][3]);
+				for (int y = Math.max(0, y1); y <= Math.min(height - 1, y2); y++) keep[y] = true;
+			}
+		}
+
+		// read the rows through the strip buffer:
+		int sample_size = (max_value > 255) ? 2 : 1;
+		int row_size = width * channels * sample_size;
+		if (row_size > buffer.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocate(row_size);
+			larger.put(buffer);
+			larger.flip();
+			buffer = larger;
+		}
+		byte[] grey = new byte[width];
+		for (int y = 0; y < height; y++) {
+			if (!keep[y]) {
+				skip(row_size);
+				continue;
+			}
+			fill(row_size);
+			convertRow(buffer, grey, width, channels, max_value);
+			device.setRow(y, grey, 0);
+		}
+
+		frames++;
+		return device;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Opens the first image of the given file for reading it in tiles. Only the pixels
+	 *  of a tile are read from the file, so the image may be much larger than the 
+	 *  available memory.
+	 *
+	 *  @param file a file containing a binary PGM or PPM image.
+	 *
+	 *  @return a tile source that keeps the file open until it is closed.
+	 *
+	 *  @throws IOException if the file can't be read or isn't a binary PGM or PPM image.
+	 *
+	 *  @see TiledDecoder#decode(TileSource, int)
+	 */
+	//---------------------------------------------------------------------------------------
+	public static TileSource openTiles(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			NetpbmReader reader = new NetpbmReader(channel);
+			int[] header = reader.readHeader();
+			if (header == null) throw new EOFException("The file is empty: " + file);
+			long data_offset = channel.position() - reader.buffer.remaining();
+			int sample_size = (header[3] > 255) ? 2 : 1;
+			if (channel.size() < data_offset + (long) header[0] * header[1] * header[2] * sample_size) {
+				throw new EOFException("The image data is truncated: " + file);
+			}
+			return new NetpbmTiles(channel, data_offset, header[0], header[1], header[2], header[3]);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the header of the next frame: magic number, width, height and max. value.
+	 *
+	 *  @return width, height, channels (1 or 3) and max. value of the frame, or null if 
+	 *          the end of the input has been reached.
+	 */
+	//---------------------------------------------------------------------------------------
+	private int[] readHeader() throws IOException {
+		if (!skipWhitespace()) return null;
+		if ((readByte() != 'P')) throw new IOException("Not a Netpbm image");
+		int type = readByte();
+		if ((type != '5') && (type != '6')) throw new IOException("Only binary PGM (P5) and PPM (P6) images are supported: P" + (char) type);
+		int width = readNumber();
+		int height = readNumber();
+		int max_value = readNumber();
+		if ((width <= 0) || (height <= 0)) throw new IOException("Invalid image size: " + width + "x" + height);
+		if ((max_value <= 0) || (max_value > 65535)) throw new IOException("Invalid max. value: " + max_value);
+
+		// the header ends with a single whitespace character:
+		readByte();
+		return new int[] { width, height, (type == '6') ? 3 : 1, max_value };
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Converts the pixels at the position of the buffer into greyscale values. */
+	//---------------------------------------------------------------------------------------
+	private static void convertRow(ByteBuffer buffer, byte[] grey, int width, int channels, int max_value) {
+		int[] rgb = new int[3];
+		for (int x = 0; x < width; x++) {
+			for (int c = 0; c < channels; c++) {
+				int value = buffer.get() & 0xFF;
+				if (max_value > 255) value = (value << 8) | (buffer.get() & 0xFF);
+				if (max_value != 255) value = (value * 255 + (max_value >> 1)) / max_value;
+				rgb[c] = value;
+			}
+			grey[x] = (byte) ((channels == 1) ? rgb[0] : Luminance.getGrey(rgb[0], rgb[1], rgb[2]));
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Makes sure that the buffer contains at least the given number of bytes.
+	 *
+	 *  @throws EOFException if the input ends before.
+	 */
+	//---------------------------------------------------------------------------------------
+	private void fill(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) return;
+		buffer.compact();
+		while (buffer.position() < bytes) {
+			if (channel.read(buffer) < 0) {
+				buffer.flip();
+				throw new EOFException("The image data ends within a frame");
+			}
+		}
+		buffer.flip();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Skips the given number of bytes, changing the position of a seekable channel
+	 *  instead of reading the bytes. */
+	//---------------------------------------------------------------------------------------
+	private void skip(int bytes) throws IOException {
+		skipped_bytes += bytes;
+		int buffered = Math.min(bytes, buffer.remaining());
+		buffer.position(buffer.position() + buffered);
+		bytes -= buffered;
+		if (bytes == 0) return;
+
+		if (channel instanceof SeekableByteChannel) {
+			SeekableByteChannel seekable = (SeekableByteChannel) channel;
+			if (seekable.position() + bytes > seekable.size()) throw new EOFException("The image data ends within a frame");
+			seekable.position(seekable.position() + bytes);
+			return;
+		}
+		while (bytes > 0) {
+			int amount = Math.min(bytes, buffer.capacity());
+			fill(amount);
+			buffer.position(buffer.position() + amount);
+			bytes -= amount;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads the next byte of the header. */
+	//---------------------------------------------------------------------------------------
+	private int readByte() throws IOException {
+		fill(1);
+		return buffer.get() & 0xFF;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the next byte of the header without consuming it, or -1 at the end of the input. */
+	//---------------------------------------------------------------------------------------
+	private int peekByte() throws IOException {
+		if (!buffer.hasRemaining()) {
+			buffer.clear();
+			int read = 0;
+			while (read == 0) read = channel.read(buffer);
+			buffer.flip();
+			if (read < 0) return -1;
+		}
+		return buffer.get(buffer.position()) & 0xFF;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Skips whitespace and comments.
+	 *
+	 *  @return false if the end of the input has been reached.
+	 */
+	//---------------------------------------------------------------------------------------
+	private boolean skipWhitespace() throws IOException {
+		while (true) {
+			int c = peekByte();
+			if (c < 0) return false;
+			if (c == '#') {
+				while (readByte() != '\n');
+			} else if ((c == ' ') || (c == '\t') || (c == '\r') || (c == '\n')) {
+				buffer.get();
+			} else {
+				return true;
+			}
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads a decimal number of the header, after whitespace and comments. */
+	//---------------------------------------------------------------------------------------
+	private int readNumber() throws IOException {
+		if (!skipWhitespace()) throw new EOFException("The header is truncated");
+		int number = 0;
+		int digits = 0;
+		while (true) {
+			int c = peekByte();
+			if ((c < '0') || (c > '9')) break;
+			buffer.get();
+			if (++digits > 9) throw new IOException("Invalid number in the header");
+			number = number * 10 + (c - '0');
+		}
+		if (digits == 0) throw new IOException("Invalid header: a number is expected");
+		return number;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Closes the channel. */
+	//---------------------------------------------------------------------------------------
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	/** @return the number of frames that have been read. */
+	public int getFrames() {
+		return frames;
+	}
+
+	/** @return the number of bytes of rows that have been skipped, because they are not scanned. */
+	public long getSkippedBytes() {
+		return skipped_bytes;
+	}
+
+	/** @return the size of the strip buffer in bytes. */
+	public int getBufferSize() {
+		return buffer.capacity();
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads tiles of a Netpbm image with positional reads, so that several threads can
+	 *  read tiles at the same time. */
+	//---------------------------------------------------------------------------------------
+	private static class NetpbmTiles implements TileSource {
+
+		private final FileChannel channel;
+		private final long data_offset;     // the position of the first pixel in the file
+		private final int width;
+		private final int height;
+		private final int channels;
+		private final int max_value;
+		private final int pixel_size;       // the number of bytes per pixel
+
+		NetpbmTiles(FileChannel channel, long data_offset, int width, int height, int channels, int max_value) {
+			this.channel = channel;
+			this.data_offset = data_offset;
+			this.width = width;
+			this.height = height;
+			this.channels = channels;
+			this.max_value = max_value;
+			this.pixel_size = channels * ((max_value > 255) ? 2 : 1);
+		}
+
+		public GreyDevice readTile(int x, int y, int w, int h) throws IOException {
+			if ((x < 0) || (y < 0) || (w <= 0) || (h <= 0) || (x + w > width) || (y + h > height)) {
+				throw new IllegalArgumentException("tile out of range: " + x + "/" + y + " " + w + "x" + h);
+			}
+			GreyDevice tile = new GreyDevice(w, h);
+			ByteBuffer buffer = ByteBuffer.allocate(w * pixel_size);
+			byte[] grey = new byte[w];
+			for (int row = 0; row < h; row++) {
+				long position = data_offset + ((long) (y + row) * width + x) * pixel_size;
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					int read = channel.read(buffer, position + buffer.position());
+					if (read < 0) throw new EOFException("The image data is truncated");
+				}
+				buffer.flip();
+				convertRow(buffer, grey, w, channels, max_value);
+				tile.setRow(row, grey, 0);
+			}
+			return tile;
+		}
+
+		public int getImageWidth() {
+			return width;
+		}
+
+		public int getImageHeight() {
+			return height;
+		}
+
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import batooImage.algorithm.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  Finds all barcodes in a very large image, e.g. a panorama of a warehouse shelf, 
+ *  with the TiledDecoder. Bitmaps and Netpbm images are read with positional reads
+ *  of the pixels of each tile, all other formats with javax.imageio.
+ *  <p>
+ *  Usage:<br>
+ *  java batooImage.application.PanoramaScanner &lt;image file&gt; [tile size] [overlap] [threads] [profile]
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class PanoramaScanner {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	public static final int DEFAULT_TILE_SIZE = 640;
+	public static final int DEFAULT_OVERLAP = 384;
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java batooImage.application.PanoramaScanner <image file> [tile size] [overlap] [threads] [profile]");
+			return;
+		}
+		int tile_size = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_TILE_SIZE;
+		int overlap = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_OVERLAP;
+		int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		DecoderProfile profile = DecoderProfile.BALANCED;
+		if (args.length > 4) {
+			profile = DecoderProfile.forName(args[4]);
+			if (profile == null) profile = DecoderProfile.load(new File(args[4]));
+		}
+
+		TiledDecoder decoder = new TiledDecoder(BarcodeDecoder.DEFAULT, profile, tile_size, overlap);
+		TileSource source = openTiles(new File(args[0]));
+		try {
+			long start = System.nanoTime();
+			List<TileDetection> detections = decoder.decode(source, threads);
+			long millis = (System.nanoTime() - start) / 1000000;
+			for (TileDetection detection : detections) System.out.println(detection);
+			System.out.println(detections.size() + " codes in " + source.getImageWidth() + "x" + source.getImageHeight() 
+				+ " pixels (" + millis + " ms, " + decoder + ", " + threads + " threads)");
+		} finally {
+			source.close();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Opens the given image for reading it in tiles, depending on its file name. */
+	//---------------------------------------------------------------------------------------
+	public static TileSource openTiles(File file) throws IOException {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".bmp")) return BitmapFile.openTiles(file);
+		if (name.endsWith(".pgm") || name.endsWith(".ppm") || name.endsWith(".pnm")) return NetpbmReader.openTiles(file);
+		return new ImageIOTileSource(file);
+	}
+
+}
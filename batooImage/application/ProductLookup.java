@@ -0,0 +1,98 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import batooImage.algorithm.*;
+import batooImage.algorithm.code.Barcode_EAN13;
+import batooImage.lookup.GtinIndex;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  Builds a GTIN index from a CSV file, or decodes images and looks up their codes in 
+ *  an index, printing the product record with the time needed for the decoding and 
+ *  the lookup.
+ *  <p>
+ *  Usage:<br>
+ *  java batooImage.application.ProductLookup build &lt;products.csv&gt; &lt;index file&gt;<br>
+ *  java batooImage.application.ProductLookup &lt;index file&gt; &lt;image file&gt; ...
+ *  
+ *  @see GtinIndex
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class ProductLookup {
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		if ((args.length == 3) && args[0].equals("build")) {
+			long start = System.nanoTime();
+			int count = GtinIndex.build(new File(args[1]), new File(args[2]));
+			System.out.println("Indexed " + count + " products in " + ((System.nanoTime() - start) / 1000000) + " ms");
+			return;
+		}
+		if (args.length < 2) {
+			System.out.println("Usage: java batooImage.application.ProductLookup build <products.csv> <index file>");
+			System.out.println("       java batooImage.application.ProductLookup <index file> <image file> ...");
+			return;
+		}
+
+		GtinIndex index = new GtinIndex(new File(args[0]));
+		try {
+			DecoderProfile profile = DecoderProfile.BALANCED;
+			byte[] record = new byte[1024];
+			for (int i = 1; i < args.length; i++) {
+				long start = System.nanoTime();
+				Device device = DecodeDaemon.openFile(new File(args[i]), profile.getScanPlan());
+				DecodeResult result;
+				try {
+					result = BarcodeDecoder.DEFAULT.decode(device, profile);
+				} finally {
+					if (device instanceof Closeable) ((Closeable) device).close();
+				}
+				long decoded = System.nanoTime();
+				if (!result.isValid()) {
+					System.out.println(args[i] + ": no valid code (" + result.getBarcode() + ")");
+					continue;
+				}
+				int position = index.find(GtinIndex.pack(((Barcode_EAN13) result.getBarcode()).getNumbers()));
+				int length = 0;
+				if (position >= 0) {
+					if (index.getRecordLength(position) > record.length) record = new byte[index.getRecordLength(position)];
+					length = index.getRecord(position, record, 0);
+				}
+				long looked_up = System.nanoTime();
+
+				String product = (position >= 0) ? new String(record, 0, length, StandardCharsets.UTF_8) : "not in the index";
+				System.out.println(args[i] + ": " + result.getBarcode() + ", " + product + " (decode: " + ((decoded - start) / 1000) 
+					+ " us, lookup: " + (looked_up - decoded) + " ns)");
+			}
+		} finally {
+			index.close();
+		}
+	}
+
+}
@@ -0,0 +1,339 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.application;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import batooImage.algorithm.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  Searches the cheapest decoder profile that reaches a target accuracy on a directory
+ *  of labelled bitmap images, and stores it in a file that can be loaded with 
+ *  DecoderProfile.load().
+ *  <p>
+ *  The expected code of an image is either the first 13 digit number in its file name,
+ *  or is given in a CSV file with the lines "file name,code".
+ *  <p>
+ *  The number of scanlines dominates the cost of a recognition run, so the scanline 
+ *  counts are tried in ascending order. For each count, the binarization window, the 
+ *  acceptance distance of the digit matching, the threshold bias and the number of 
+ *  combinations tried to find a valid code are optimized one after another, until none
+ *  of them improves the profile any more. The first scanline count that reaches the 
+ *  target accuracy wins.
+ *  <p>
+ *  Below the target accuracy, a profile is better if it recognizes more images. Among 
+ *  the profiles that reach the target, the one with the fewest wrong results is taken,
+ *  and then the cheapest one. The cost is compared as scanlines * (1 + combinations) 
+ *  first, because it doesn't change between runs, and the measured time only breaks 
+ *  the remaining ties.
+ *  <p>
+ *  Usage:<br>
+ *  java batooImage.application.ProfileTuner &lt;image directory&gt; &lt;target accuracy 0..1&gt; 
+ *  &lt;profile file&gt; [labels.csv]
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class ProfileTuner {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	// the values that are tried for each parameter:
+	private static final int[] SCANLINE_COUNTS = { 5, 10, 15, 20, 30, 50, 75, 100, 150, 200, 300 };
+	private static final int[] WINDOW_DIVISORS = { 10, 15, 20, 25, 30, 40 };
+	private static final int[] ACCEPTANCE_DISTANCES = { 30, 40, 50, 60, 70, 80 };
+	private static final int[] THRESHOLD_BIASES = { 0, 3, 6, 10 };
+	private static final int[] CONSIDERED_CODES = { 0, 20, 100, 1000, 5000 };
+
+	// the max. number of passes over all parameters for one scanline count:
+	private static final int MAX_ROUNDS = 3;
+
+	private static final Pattern CODE_PATTERN = Pattern.compile("\\d{13}");
+
+	private final BarcodeDecoder decoder;
+	private final List<ImageDevice> images = new ArrayList<ImageDevice>();
+	private final List<String> expected_codes = new ArrayList<String>();
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	public ProfileTuner(BarcodeDecoder decoder) {
+		this.decoder = decoder;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: java batooImage.application.ProfileTuner <image directory> <target accuracy 0..1> <profile file> [labels.csv]");
+			return;
+		}
+
+		File directory = new File(args[0]);
+		double target_accuracy = Double.parseDouble(args[1]);
+		File profile_file = new File(args[2]);
+		File labels = (args.length > 3) ? new File(args[3]) : null;
+
+		ProfileTuner tuner = new ProfileTuner(BarcodeDecoder.DEFAULT);
+		tuner.loadCorpus(directory, labels);
+		if (tuner.images.isEmpty()) {
+			System.out.println("No labelled bitmap images found in " + directory);
+			return;
+		}
+		System.out.println("Loaded " + tuner.images.size() + " labelled images.");
+
+		Evaluation best = tuner.tune(target_accuracy);
+
+		String comments = "Tuned on " + tuner.images.size() + " images of " + directory + ": " + best;
+		best.profile.store(profile_file, comments);
+		System.out.println(comments);
+		if (best.getAccuracy() < target_accuracy) {
+			System.out.println("The target accuracy of " + target_accuracy + " has not been reached, the most accurate profile has been stored.");
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Loads all labelled bitmap images of the given directory.
+	 *  
+	 *  @param directory the directory containing the images.
+	 *  @param labels a CSV file with the lines "file name,code", or null if the codes 
+	 *         should be taken from the file names.
+	 *         
+	 *  @throws IOException if an image or the CSV file can't be read.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void loadCorpus(File directory, File labels) throws IOException {
+		Map<String, String> codes = new HashMap<String, String>();
+		if (labels != null) codes = readLabels(labels);
+
+		File[] files = directory.listFiles();
+		if (files == null) throw new IOException("Not a directory: " + directory);
+		Arrays.sort(files);
+
+		for (int i = 0; i < files.length; i++) {
+			String name = files[i].getName();
+			if (!name.toLowerCase().endsWith(".bmp")) continue;
+
+			String code = codes.get(name);
+			if ((code == null) && (labels == null)) {
+				Matcher matcher = CODE_PATTERN.matcher(name);
+				if (matcher.find()) code = matcher.group();
+			}
+			if (code == null) continue;
+
+			images.add(BitmapFile.load(files[i]));
+			expected_codes.add(code);
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Reads a CSV file with the lines "file name,code". Empty lines, lines starting 
+	 *  with # and lines without a 13 digit code are ignored. */
+	//---------------------------------------------------------------------------------------
+	private static Map<String, String> readLabels(File labels) throws IOException {
+		Map<String, String> codes = new HashMap<String, String>();
+		BufferedReader reader = new BufferedReader(new FileReader(labels));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if ((line.length() == 0) || line.startsWith("#")) continue;
+				int comma = line.lastIndexOf(',');
+				if (comma < 0) continue;
+				String code = line.substring(comma + 1).trim();
+				if (!CODE_PATTERN.matcher(code).matches()) continue;
+				codes.put(line.substring(0, comma).trim(), code);
+			}
+		} finally {
+			reader.close();
+		}
+		return codes;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Searches the cheapest profile that reaches the given accuracy.
+	 *  
+	 *  @param target_accuracy the required share of correctly recognized images (0..1).
+	 *  
+	 *  @return the evaluation of the cheapest profile reaching the target accuracy, or
+	 *          of the most accurate profile if no profile reaches it.
+	 */
+	//---------------------------------------------------------------------------------------
+	public Evaluation tune(double target_accuracy) {
+
+		// warm up the JIT compiler, so that the first measurements are comparable:
+		evaluate(DecoderProfile.BALANCED);
+
+		int[] parameters = { DecoderProfile.BALANCED.getBinarizationWindowDivisor(), 
+			DecoderProfile.BALANCED.getMaxDifferenceForAcceptance(), DecoderProfile.BALANCED.getThresholdBias(),
+			DecoderProfile.BALANCED.getMaxAmountOfConsideredCodes() };
+		int[][] values = { WINDOW_DIVISORS, ACCEPTANCE_DISTANCES, THRESHOLD_BIASES, CONSIDERED_CODES };
+		Evaluation most_accurate = null;
+
+		for (int i = 0; i < SCANLINE_COUNTS.length; i++) {
+			int scanlines = SCANLINE_COUNTS[i];
+			Evaluation best = evaluate(createProfile(scanlines, parameters));
+
+			// optimize one parameter after another, starting with the best values so far:
+			for (int round = 0; round < MAX_ROUNDS; round++) {
+				boolean improved = false;
+				for (int p = 0; p < parameters.length; p++) {
+					for (int v = 0; v < values[p].length; v++) {
+						if (values[p][v] == parameters[p]) continue;
+						int[] candidate = parameters.clone();
+						candidate[p] = values[p][v];
+						Evaluation evaluation = evaluate(createProfile(scanlines, candidate));
+						if (evaluation.isBetterThan(best, target_accuracy)) {
+							best = evaluation;
+							parameters = candidate;
+							improved = true;
+						}
+					}
+				}
+				if (!improved) break;
+			}
+
+			System.out.println(scanlines + " scanlines: " + best);
+			if ((most_accurate == null) || best.isBetterThan(most_accurate, target_accuracy)) most_accurate = best;
+			if (best.getAccuracy() >= target_accuracy) return best;
+		}
+		return most_accurate;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Creates a profile based on the BALANCED profile.
+	 *  
+	 *  @param scanlines the number of scanlines.
+	 *  @param parameters the binarization window divisor, the acceptance distance, the
+	 *         threshold bias and the max. number of considered codes.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static DecoderProfile createProfile(int scanlines, int[] parameters) {
+		Properties properties = new Properties();
+		properties.setProperty("scanlines", "" + scanlines);
+		properties.setProperty("binarization_window_divisor", "" + parameters[0]);
+		properties.setProperty("max_difference_for_acceptance", "" + parameters[1]);
+		properties.setProperty("threshold_bias", "" + parameters[2]);
+		properties.setProperty("max_amount_of_considered_codes", "" + parameters[3]);
+		return DecoderProfile.fromProperties(properties, DecoderProfile.BALANCED);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Runs the recognition with the given profile on all images.
+	 *  
+	 *  @param profile the profile to evaluate.
+	 *  
+	 *  @return the number of correct and wrong results and the time needed.
+	 */
+	//---------------------------------------------------------------------------------------
+	public Evaluation evaluate(DecoderProfile profile) {
+		int correct = 0;
+		int wrong = 0;
+		long nanos = 0;
+		for (int i = 0; i < images.size(); i++) {
+			DecodeResult result = decoder.decode(images.get(i), profile);
+			nanos = nanos + result.getElapsedNanos();
+			if (!result.isValid()) continue;
+			if (result.getBarcode().toString().equals(expected_codes.get(i))) correct++;
+			else wrong++;
+		}
+		return new Evaluation(profile, images.size(), correct, wrong, nanos);
+	}
+
+	//---------------------------------------------------------------------------------------
+	// HELPER CLASS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** The result of running the recognition with one profile on all images. */
+	//---------------------------------------------------------------------------------------
+	public static class Evaluation {
+
+		final DecoderProfile profile;
+		final int images;
+		final int correct;
+		final int wrong;
+		final long nanos;
+
+		Evaluation(DecoderProfile profile, int images, int correct, int wrong, long nanos) {
+			this.profile = profile;
+			this.images = images;
+			this.correct = correct;
+			this.wrong = wrong;
+			this.nanos = nanos;
+		}
+
+		public double getAccuracy() {
+			return (double) correct / images;
+		}
+
+		//---------------------------------------------------------------------------------------
+		/** @return scanlines * (1 + max. number of considered codes), a measure of the 
+		 *          cost of the profile that doesn't depend on the timing of a run. */
+		//---------------------------------------------------------------------------------------
+		public long getCost() {
+			return (long) profile.getScanPlan().getAmountScanlines() * (1 + profile.getMaxAmountOfConsideredCodes());
+		}
+
+		//---------------------------------------------------------------------------------------
+		/** Compares two evaluations. A profile that reaches the target accuracy is better 
+		 *  than one that doesn't. If both reach it, fewer wrong results are better, then 
+		 *  a lower cost, then less time. If none reaches it, more correct results are 
+		 *  better, then fewer wrong results, then a lower cost, then less time.
+		 *  
+		 *  @param other the evaluation to compare with.
+		 *  @param target_accuracy the required share of correctly recognized images (0..1).
+		 */
+		//---------------------------------------------------------------------------------------
+		boolean isBetterThan(Evaluation other, double target_accuracy) {
+			boolean reached = getAccuracy() >= target_accuracy;
+			if (reached != (other.getAccuracy() >= target_accuracy)) return reached;
+			if ((!reached) && (correct != other.correct)) return correct > other.correct;
+			if (wrong != other.wrong) return wrong < other.wrong;
+			if (getCost() != other.getCost()) return getCost() < other.getCost();
+			return nanos < other.nanos;
+		}
+
+		public String toString() {
+			return "accuracy " + correct + "/" + images + " (wrong: " + wrong + "), " 
+				+ (nanos / images / 1000) + "us per image, " + profile.getScanPlan().getAmountScanlines() + " scanlines, "
+				+ "window divisor " + profile.getBinarizationWindowDivisor() + ", acceptance " 
+				+ profile.getMaxDifferenceForAcceptance() + ", threshold bias " + profile.getThresholdBias()
+				+ ", considered codes " + profile.getMaxAmountOfConsideredCodes();
+		}
+	}
+
+}
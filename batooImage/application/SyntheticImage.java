@@ -0,0 +1,304 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ *  MA  02110-1301, USA  
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+
+package batooImage.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import batooImage.algorithm.ImageDevice;
+import batooImage.algorithm.code.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  Renders synthetic images of EAN13 barcodes with a known content, to measure the 
+ *  read rate of the decoder under controlled distortions.
+ *  <p>
+ *  The barcode is drawn with a quiet zone of 11 modules on both sides and rotated 
+ *  around the image centre. The modules are antialiased with 4x4 samples per pixel, 
+ *  then the image is blurred with a gaussian kernel and gaussian noise is added. The 
+ *  contrast scales the difference between the bars and the background around mid grey.
+ *  <p>
+ *  The image size only depends on the module width and the rotation, so all codes 
+ *  rendered by one generator have the same size.
+ *  
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class SyntheticImage {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	private static final int QUIET_ZONE = 11;        // modules on each side of the code
+	private static final float BAR_HEIGHT = 0.6f;    // relative to the width of the code
+	private static final int MARGIN = 8;             // pixels around the rotated code
+	private static final int SAMPLES = 4;            // antialiasing samples per direction
+
+	private final float module_width;
+	private final float rotation;
+	private final float blur;
+	private final float noise;
+	private final float contrast;
+
+	private final int width;
+	private final int height;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** @param module_width the width of one module in pixels.
+	 *  @param rotation the rotation of the code in degrees.
+	 *  @param blur the standard deviation of the gaussian blur in pixels, 0 for none.
+	 *  @param noise the standard deviation of the noise in grey levels, 0 for none.
+	 *  @param contrast the difference between bars and background, 1 for black on white.
+	 *  
+	 *  @throws IllegalArgumentException if a parameter is out of range.
+	 */
+	//---------------------------------------------------------------------------------------
+	public SyntheticImage(float module_width, float rotation, float blur, float noise, float contrast) {
+		if (!(module_width > 0)) throw new IllegalArgumentException("module width must be positive: " + module_width);
+		if ((blur < 0) || (noise < 0)) throw new IllegalArgumentException("blur and noise must not be negative");
+		if ((contrast < 0) || (contrast > 1)) throw new IllegalArgumentException("contrast must be between 0 and 1: " + contrast);
+		this.module_width = module_width;
+		this.rotation = rotation;
+		this.blur = blur;
+		this.noise = noise;
+		this.contrast = contrast;
+
+		double code_width = getCodeWidth();
+		double code_height = code_width * BAR_HEIGHT;
+		double angle = Math.toRadians(rotation);
+		double cos = Math.abs(Math.cos(angle));
+		double sin = Math.abs(Math.sin(angle));
+		this.width = (int) Math.ceil(code_width * cos + code_height * sin) + 2 * MARGIN;
+		this.height = (int) Math.ceil(code_width * sin + code_height * cos) + 2 * MARGIN;
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Creates a random valid EAN13 code. */
+	//---------------------------------------------------------------------------------------
+	public static Barcode_EAN13 createRandomCode(Random random) {
+		int[] numbers = new int[13];
+		for (int i = 0; i < 12; i++) numbers[i] = random.nextInt(10);
+		numbers[12] = Encoder_EAN13.getChecksumDigit(numbers);
+		return new Barcode_EAN13(numbers);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Renders the given code.
+	 *  
+	 *  @param code the barcode to draw.
+	 *  @param seed the seed of the noise, so that images can be reproduced.
+	 *  
+	 *  @return the grey values of the image, row by row from the top.
+	 */
+	//---------------------------------------------------------------------------------------
+	public byte[] render(Barcode_EAN13 code, long seed) {
+		boolean[] modules = Encoder_EAN13.encode(code);
+		float[] image = new float[width * height];
+
+		float white = 127.5f + 127.5f * contrast;
+		float black = 127.5f - 127.5f * contrast;
+
+		double angle = Math.toRadians(rotation);
+		float cos = (float) Math.cos(angle);
+		float sin = (float) Math.sin(angle);
+		float code_width = getCodeWidth();
+		float half_width = code_width / 2;
+		float half_height = code_width * BAR_HEIGHT / 2;
+		float center_x = width / 2f;
+		float center_y = height / 2f;
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int black_samples = 0;
+				for (int sy = 0; sy < SAMPLES; sy++) {
+					float dy = y + (sy + 0.5f) / SAMPLES - center_y;
+					for (int sx = 0; sx < SAMPLES; sx++) {
+						float dx = x + (sx + 0.5f) / SAMPLES - center_x;
+
+						// rotate the sample back into the coordinates of the code:
+						float u = dx * cos + dy * sin + half_width;
+						float v = -dx * sin + dy * cos;
+						if ((v < -half_height) || (v >= half_height) || (u < 0)) continue;
+						int module = (int) (u / module_width) - QUIET_ZONE;
+						if ((module >= 0) && (module < modules.length) && modules[module]) black_samples++;
+					}
+				}
+				image[y * width + x] = white - (white - black) * black_samples / (SAMPLES * SAMPLES);
+			}
+		}
+
+		if (blur > 0) blur(image);
+
+		Random random = new Random(seed);
+		byte[] grey = new byte[width * height];
+		for (int i = 0; i < grey.length; i++) {
+			float value = image[i];
+			if (noise > 0) value += (float) random.nextGaussian() * noise;
+			grey[i] = (byte) Math.max(0, Math.min(255, Math.round(value)));
+		}
+		return grey;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Renders the given code into an ImageDevice. */
+	//---------------------------------------------------------------------------------------
+	public ImageDevice createDevice(Barcode_EAN13 code, long seed) {
+		return new ImageDevice(toBitmap(render(code, seed)), width, height);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Renders the given code into a file. Files ending with ".bmp" are written as 24 bit
+	 *  bitmaps, all others as raw 8 bit grey values, row by row from the top.
+	 *  
+	 *  @throws IOException if the file can't be written.
+	 */
+	//---------------------------------------------------------------------------------------
+	public void write(Barcode_EAN13 code, long seed, File file) throws IOException {
+		byte[] grey = render(code, seed);
+		byte[] data = file.getName().toLowerCase().endsWith(".bmp") ? toBitmap(grey) : grey;
+		Files.write(file.toPath(), data);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Converts grey values into the data of an uncompressed 24 bit bitmap file. The rows
+	 *  are stored from the bottom, as in the bitmaps of the test directory. */
+	//---------------------------------------------------------------------------------------
+	public byte[] toBitmap(byte[] grey) {
+		int row_size = (width * 3 + 3) & ~3;
+		byte[] data = new byte[54 + row_size * height];
+		data[0] = 'B';
+		data[1] = 'M';
+		putInt(data, 2, data.length);
+		putInt(data, 10, 54);
+		putInt(data, 14, 40);
+		putInt(data, 18, width);
+		putInt(data, 22, height);
+		data[26] = 1;
+		data[28] = 24;
+		putInt(data, 34, row_size * height);
+
+		for (int y = 0; y < height; y++) {
+			int pos = 54 + (height - 1 - y) * row_size;
+			for (int x = 0; x < width; x++) {
+				byte value = grey[y * width + x];
+				data[pos++] = value;
+				data[pos++] = value;
+				data[pos++] = value;
+			}
+		}
+		return data;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Applies a separable gaussian blur, repeating the border pixels. */
+	//---------------------------------------------------------------------------------------
+	private void blur(float[] image) {
+		int radius = (int) Math.ceil(3 * blur);
+		float[] kernel = new float[2 * radius + 1];
+		float sum = 0;
+		for (int i = -radius; i <= radius; i++) {
+			kernel[i + radius] = (float) Math.exp(-(i * i) / (2.0 * blur * blur));
+			sum += kernel[i + radius];
+		}
+		for (int i = 0; i < kernel.length; i++) kernel[i] /= sum;
+
+		float[] temp = new float[image.length];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				float value = 0;
+				for (int i = -radius; i <= radius; i++) {
+					int sx = Math.max(0, Math.min(width - 1, x + i));
+					value += kernel[i + radius] * image[y * width + sx];
+				}
+				temp[y * width + x] = value;
+			}
+		}
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				float value = 0;
+				for (int i = -radius; i <= radius; i++) {
+					int sy = Math.max(0, Math.min(height - 1, y + i));
+					value += kernel[i + radius] * temp[sy * width + x];
+				}
+				image[y * width + x] = value;
+			}
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Writes a little endian int value at the given position. */
+	//---------------------------------------------------------------------------------------
+	private static void putInt(byte[] data, int pos, int value) {
+		data[pos] = (byte) value;
+		data[pos + 1] = (byte) (value >> 8);
+		data[pos + 2] = (byte) (value >> 16);
+		data[pos + 3] = (byte) (value >> 24);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Returns the width of the code including the quiet zones, in pixels. */
+	//---------------------------------------------------------------------------------------
+	private float getCodeWidth() {
+		return (Encoder_EAN13.MODULES + 2 * QUIET_ZONE) * module_width;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public float getModuleWidth() {
+		return module_width;
+	}
+
+	public float getRotation() {
+		return rotation;
+	}
+
+	public float getBlur() {
+		return blur;
+	}
+
+	public float getNoise() {
+		return noise;
+	}
+
+	public float getContrast() {
+		return contrast;
+	}
+
+	public String toString() {
+		return "module " + module_width + "px, rotation " + rotation + ", blur " + blur + ", noise " + noise + ", contrast " + contrast;
+	}
+
+}
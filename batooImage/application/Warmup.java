@@ -0,0 +1,136 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import batooImage.algorithm.*;
+import batooImage.algorithm.code.*;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  Runs the decoder on synthetic EAN13 images before real images are decoded, so that
+ *  the hot methods (binarization, field extraction, digit matching, voting and the
+ *  stitching of halves) are compiled by the JIT compiler instead of being interpreted
+ *  while the first images are decoded. This is useful for long running processes like
+ *  the DecodeDaemon; short runs like the ImageLoader are better served by the class
+ *  data sharing archive created by build/build.sh.
+ *  <p>
+ *  The images are decoded with all predefined profiles, through ImageDevice and
+ *  GreyDevice, sharp and distorted (the latter leave halves that have to be stitched).
+ *  <p>
+ *  The main method measures the time from the start of the JVM to the first result
+ *  and the steady state time per decode, with and without a warmup:<br>
+ *  java batooImage.application.Warmup &lt;bitmap file&gt; [warmup rounds] [decodes]
+ *
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class Warmup {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	/** The number of rounds that are enough for the C2 compiler to compile the hot methods. */
+	public static final int DEFAULT_ROUNDS = 20;
+
+	// the rendering parameters of the images: module width, rotation, blur, noise, contrast
+	private static final float[][] SETTINGS = {
+		{ 3f, 0f, 0f, 0f, 1f },
+		{ 2f, 5f, 1f, 10f, 0.5f },
+		{ 1.5f, 10f, 2f, 25f, 0.25f },
+	};
+
+	private static final DecoderProfile[] PROFILES = { DecoderProfile.FAST, DecoderProfile.BALANCED, DecoderProfile.THOROUGH };
+
+	private static final long SEED = 45;
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java batooImage.application.Warmup <bitmap file> [warmup rounds] [decodes]");
+			return;
+		}
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 0;
+		int decodes = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+		long warmup_nanos = run(rounds);
+
+		ImageDevice device = BitmapFile.load(new File(args[0]));
+		long first_start = System.nanoTime();
+		Barcode first = BarcodeDecoder.DEFAULT.recognizeBarcode(device);
+		long first_nanos = System.nanoTime() - first_start;
+		long first_result = System.currentTimeMillis();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < decodes; i++) BarcodeDecoder.DEFAULT.recognizeBarcode(device);
+		long steady_nanos = (System.nanoTime() - start) / Math.max(1, decodes);
+
+		// (the management classes are loaded after the first result, so they don't delay it)
+		first_result -= ManagementFactory.getRuntimeMXBean().getStartTime();
+
+		System.out.println("The recognized barcode is: " + first.toString());
+		System.out.println("Warmup: " + rounds + " rounds in " + (warmup_nanos / 1000000) + " ms");
+		System.out.println("Start to first result: " + first_result + " ms (first decode " + (first_nanos / 1000) + " us)");
+		System.out.println("Steady state: " + (steady_nanos / 1000) + " us per decode (" + decodes + " decodes)");
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Decodes synthetic images for the given number of rounds.
+	 *
+	 *  @return the time needed in nanoseconds.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static long run(int rounds) {
+		if (rounds < 0) throw new IllegalArgumentException("rounds must not be negative: " + rounds);
+		long start = System.nanoTime();
+		if (rounds == 0) return 0;
+
+		// the images are rendered once, rendering takes longer than decoding:
+		Random random = new Random(SEED);
+		Device[] devices = new Device[2 * SETTINGS.length];
+		for (int i = 0; i < SETTINGS.length; i++) {
+			float[] s = SETTINGS[i];
+			SyntheticImage generator = new SyntheticImage(s[0], s[1], s[2], s[3], s[4]);
+			Barcode_EAN13 code = SyntheticImage.createRandomCode(random);
+			devices[2 * i] = generator.createDevice(code, SEED + i);
+			devices[2 * i + 1] = createGreyDevice(generator.render(code, SEED + i), generator.getWidth(), generator.getHeight());
+		}
+
+		for (int round = 0; round < rounds; round++) {
+			for (int i = 0; i < devices.length; i++) {
+				for (int p = 0; p < PROFILES.length; p++) BarcodeDecoder.DEFAULT.decode(devices[i], PROFILES[p]);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static GreyDevice createGreyDevice(byte[] grey, int width, int height) {
+		GreyDevice device = new GreyDevice(width, height);
+		for (int y = 0; y < height; y++) device.setRow(y, grey, y * width);
+		return device;
+	}
+
+}
@@ -0,0 +1,386 @@
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/** 
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ *  MA  02110-1301, USA
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+package batooImage.lookup;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import batooImage.algorithm.code.Barcode_EAN13;
+
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+/**
+ *  A read-only index that maps GTINs (EAN13 codes) to product records, stored in a file
+ *  that is memory mapped, so the index doesn't use the Java heap and is shared by all 
+ *  processes that open it. Lookups take constant time and don't allocate objects, so a 
+ *  decoded code can be enriched within the decoding process.
+ *  <p>
+ *  The index is built from a CSV file with one product per line. The first field is
+ *  the GTIN, the rest of the line (without the comma) is stored as the record, as UTF-8
+ *  bytes without further parsing. Lines whose first field isn't a number of 8 to 14 
+ *  digits, e.g. a header line, are skipped. GTINs are stored as numbers, so a 12 digit UPC-A code and the 
+ *  EAN13 code with a leading zero are the same GTIN.
+ *  <p>
+ *  File layout (big endian):<br>
+ *  int MAGIC, int VERSION, int capacity (a power of two), int count, long data offset, 
+ *  long data size<br>
+ *  capacity slots of 16 bytes: long GTIN + 1 (0 for an empty slot), int record offset,
+ *  int record length<br>
+ *  the records, one after another<br>
+ *  The slots form a hash table with linear probing, which is at most half full.
+ *  <p>
+ *  An index file is never changed once it has been written: build() writes a new index
+ *  into a temporary file in the same directory and renames it over the old one, so 
+ *  processes that have mapped the old index keep reading it until they reopen the file.
+ *  <p>
+ *  Usage:<br>
+ *  GtinIndex.build(new File("products.csv"), new File("products.idx"));<br>
+ *  GtinIndex index = new GtinIndex(new File("products.idx"));<br>
+ *  int record = index.find(GtinIndex.pack(code.getNumbers()));<br>
+ *  if (record &gt;= 0) length = index.getRecord(record, buffer, 0);<br>
+ *
+ *  @version 1.0
+ */
+//xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
+public class GtinIndex implements Closeable {
+
+	//---------------------------------------------------------------------------------------
+	// VARIABLES
+	//---------------------------------------------------------------------------------------
+
+	public static final int MAGIC = 0x4754494E;   // "GTIN"
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 32;
+	private static final int SLOT_SIZE = 16;
+	private static final int MAX_CAPACITY = 1 << 26;  // the table must fit into one mapped buffer
+	private static final int MIN_DIGITS = 8;       // GTIN-8
+	private static final int MAX_DIGITS = 14;      // GTIN-14
+
+	private final FileChannel channel;
+	private final ByteBuffer table;           // the slots
+	private final ByteBuffer data;            // the records
+	private final int mask;                   // capacity - 1
+	private final int count;
+
+	//---------------------------------------------------------------------------------------
+	// CONSTRUCTOR
+	//---------------------------------------------------------------------------------------
+	//---------------------------------------------------------------------------------------
+	/** Opens and maps an index file.
+	 *
+	 *  @param file an index created by build().
+	 *
+	 *  @throws IOException if the file can't be read or isn't a valid index.
+	 */
+	//---------------------------------------------------------------------------------------
+	public GtinIndex(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, channel.size()));
+			if ((header.limit() < HEADER_SIZE) || (header.getInt(0) != MAGIC)) throw new IOException("Not a GTIN index: " + file);
+			if (header.getInt(4) != VERSION) throw new IOException("Unsupported GTIN index version " + header.getInt(4) + ": " + file);
+			int capacity = header.getInt(8);
+			count = header.getInt(12);
+			long data_offset = header.getLong(16);
+			long data_size = header.getLong(24);
+			if ((capacity <= 0) || (capacity > MAX_CAPACITY) || (Integer.bitCount(capacity) != 1)
+				|| (count < 0) || (count > capacity / 2) || (data_offset != HEADER_SIZE + (long) capacity * SLOT_SIZE) || (data_size < 0) 
+				|| (data_size > Integer.MAX_VALUE) || (data_offset + data_size > channel.size())) {
+				throw new IOException("The GTIN index is corrupt: " + file);
+			}
+			mask = capacity - 1;
+			table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) capacity * SLOT_SIZE);
+			data = channel.map(FileChannel.MapMode.READ_ONLY, data_offset, data_size);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	// METHODS
+	//---------------------------------------------------------------------------------------
+
+	//---------------------------------------------------------------------------------------
+	/** Builds an index file from a CSV file. The index is written into a temporary file
+	 *  that is then atomically renamed, so an existing index is replaced, but never 
+	 *  changed while other processes have it mapped.
+	 *
+	 *  @param csv the products, one per line, with the GTIN as the first field.
+	 *  @param index the index file that is created. An existing file is replaced.
+	 *
+	 *  @return the number of products in the index.
+	 *
+	 *  @throws IOException if a file can't be read or written, or a GTIN occurs twice.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static int build(File csv, File index) throws IOException {
+		File temp = File.createTempFile(index.getName() + ".", ".tmp", index.getAbsoluteFile().getParentFile());
+		boolean moved = false;
+		try {
+			int count = write(csv, temp);
+			Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+			return count;
+		} finally {
+			if (!moved) temp.delete();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Writes an index of the products of a CSV file into a new file.
+	 *
+	 *  @return the number of products in the index.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static int write(File csv, File index) throws IOException {
+
+		// the table size follows from the number of lines:
+		int lines = 0;
+		InputStream in = new BufferedInputStream(new FileInputStream(csv), 1 << 16);
+		try {
+			int c;
+			while ((c = in.read()) >= 0) {
+				if (c == '\n') lines++;
+			}
+			lines++;
+		} finally {
+			in.close();
+		}
+		if (lines > MAX_CAPACITY / 2) throw new IOException("Too many products for one index: " + lines);
+		int capacity = Integer.highestOneBit(lines * 2 - 1) << 1;
+		long data_offset = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+
+		FileChannel out = FileChannel.open(index.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, 
+			StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			MappedByteBuffer table = out.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, (long) capacity * SLOT_SIZE);
+			ByteBuffer records = ByteBuffer.allocate(1 << 16);
+			long data_size = 0;                // the size of all records
+			long written = 0;                  // the size of the records that have been written
+			int count = 0;
+
+			in = new BufferedInputStream(new FileInputStream(csv), 1 << 16);
+			try {
+				byte[] line = new byte[256];
+				int line_number = 0;
+				while (true) {
+					// read the next line, without the line break:
+					int length = 0;
+					int c;
+					while (((c = in.read()) >= 0) && (c != '\n')) {
+						if (length == line.length) {
+							byte[] larger = new byte[line.length * 2];
+							System.arraycopy(line, 0, larger, 0, length);
+							line = larger;
+						}
+						line[length++] = (byte) c;
+					}
+					if ((c < 0) && (length == 0)) break;
+					line_number++;
+					if ((length > 0) && (line[length - 1] == '\r')) length--;
+
+					// the GTIN:
+					long gtin = 0;
+					int digits = 0;
+					while ((digits < length) && (line[digits] >= '0') && (line[digits] <= '9')) {
+						gtin = gtin * 10 + (line[digits] - '0');
+						digits++;
+					}
+					if ((digits < MIN_DIGITS) || (digits > MAX_DIGITS) || ((digits < length) && (line[digits] != ','))) continue;
+					int record_start = Math.min(length, digits + 1);
+					int record_length = length - record_start;
+					if (data_size + record_length > Integer.MAX_VALUE) throw new IOException("The records are too large for one index");
+
+					// insert the slot:
+					int slot = hash(gtin) & (capacity - 1);
+					while (table.getLong(slot * SLOT_SIZE) != 0) {
+						if (table.getLong(slot * SLOT_SIZE) == gtin + 1) {
+							throw new IOException("Duplicate GTIN " + gtin + " in line " + line_number + " of " + csv);
+						}
+						slot = (slot + 1) & (capacity - 1);
+					}
+					table.putLong(slot * SLOT_SIZE, gtin + 1);
+					table.putInt(slot * SLOT_SIZE + 8, (int) data_size);
+					table.putInt(slot * SLOT_SIZE + 12, record_length);
+					count++;
+
+					// append the record:
+					if (record_length > records.remaining()) written += writeRecords(out, records, data_offset + written);
+					if (record_length > records.capacity()) records = ByteBuffer.allocate(record_length);
+					records.put(line, record_start, record_length);
+					data_size += record_length;
+				}
+			} finally {
+				in.close();
+			}
+			writeRecords(out, records, data_offset + written);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(count).putLong(data_offset).putLong(data_size);
+			header.flip();
+			while (header.hasRemaining()) out.write(header, header.position());
+			table.force();
+			out.force(true);
+			return count;
+		} finally {
+			out.close();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Writes the buffered records to the given position of the file and clears the buffer.
+	 *
+	 *  @return the number of bytes that have been written.
+	 */
+	//---------------------------------------------------------------------------------------
+	private static int writeRecords(FileChannel out, ByteBuffer records, long position) throws IOException {
+		records.flip();
+		int size = records.remaining();
+		while (records.hasRemaining()) position += out.write(records, position);
+		records.clear();
+		return size;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Packs the digits of a code into a GTIN.
+	 *
+	 *  @param numbers the digits, e.g. from Barcode_EAN13.getNumbers().
+	 *
+	 *  @return the GTIN, or -1 if a digit hasn't been recognized.
+	 */
+	//---------------------------------------------------------------------------------------
+	public static long pack(int[] numbers) {
+		long gtin = 0;
+		for (int i = 0; i < numbers.length; i++) {
+			if ((numbers[i] < 0) || (numbers[i] > 9)) return -1;
+			gtin = gtin * 10 + numbers[i];
+		}
+		return gtin;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Finds the record of a GTIN.
+	 *
+	 *  @param gtin the GTIN, as returned by pack().
+	 *
+	 *  @return the position of the record, to be used with getRecord(), or -1 if the 
+	 *          GTIN isn't in the index.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int find(long gtin) {
+		if (gtin < 0) return -1;
+		int slot = hash(gtin) & mask;
+		while (true) {
+			long stored = table.getLong(slot * SLOT_SIZE);
+			if (stored == gtin + 1) return slot;
+			if (stored == 0) return -1;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Copies a record into the given array.
+	 *
+	 *  @param record the position of the record, as returned by find().
+	 *  @param buffer receives the UTF-8 bytes of the record.
+	 *  @param offset the position in the array.
+	 *
+	 *  @return the length of the record in bytes.
+	 *
+	 *  @throws IndexOutOfBoundsException if the record doesn't fit into the array.
+	 */
+	//---------------------------------------------------------------------------------------
+	public int getRecord(int record, byte[] buffer, int offset) {
+		int length = table.getInt(record * SLOT_SIZE + 12);
+		data.get(table.getInt(record * SLOT_SIZE + 8), buffer, offset, length);
+		return length;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** @return the length of a record in bytes. */
+	//---------------------------------------------------------------------------------------
+	public int getRecordLength(int record) {
+		return table.getInt(record * SLOT_SIZE + 12);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Looks up the record of a code. Unlike find(), this creates a string.
+	 *
+	 *  @return the record, or null if the code isn't in the index.
+	 */
+	//---------------------------------------------------------------------------------------
+	public String lookup(Barcode_EAN13 code) {
+		int record = find(pack(code.getNumbers()));
+		if (record < 0) return null;
+		byte[] bytes = new byte[getRecordLength(record)];
+		getRecord(record, bytes, 0);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Spreads the bits of a GTIN over the slots. (The finalizer of MurmurHash3.) */
+	//---------------------------------------------------------------------------------------
+	private static int hash(long gtin) {
+		long h = gtin;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	//---------------------------------------------------------------------------------------
+	/** Closes the index file. The mapping is released when the index is garbage collected. */
+	//---------------------------------------------------------------------------------------
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//---------------------------------------------------------------------------------------
+	// GET METHODS
+	//---------------------------------------------------------------------------------------
+
+	/** @return the number of products in the index. */
+	public int getCount() {
+		return count;
+	}
+
+	/** @return the number of slots of the hash table. */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	public String toString() {
+		return "GtinIndex (" + count + " products, " + (mask + 1) + " slots)";
+	}
+
+}
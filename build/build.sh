@@ -1,2 +1,9 @@
+javac batooImage/*/*.java batooImage/*/*/*.java
 
-javac batooImage/application/ImageLoader.java
+# A class data sharing archive for short runs of the ImageLoader: the classes loaded while
+# decoding the test images are stored in build/batoo.jsa. (CDS only archives classes from
+# jar files, so the classes are packed into build/batoo.jar first.) Use both with:
+# java -XX:SharedArchiveFile=build/batoo.jsa -cp build/batoo.jar batooImage.application.ImageLoader ...
+jar cf build/batoo.jar batooImage/*/*.class batooImage/*/*/*.class
+rm -f build/batoo.jsa
+java -XX:ArchiveClassesAtExit=build/batoo.jsa -cp build/batoo.jar batooImage.application.ImageLoader test/medium.bmp 640 480 > /dev/null
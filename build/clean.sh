@@ -1,3 +1,4 @@
 
 rm batooImage/*/*.class
-rm batooImage/*/*/*.class
\ No newline at end of file
+rm batooImage/*/*/*.class
+rm -f build/batoo.jar build/batoo.jsa
\ No newline at end of file